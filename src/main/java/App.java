@@ -17,6 +17,9 @@ public class App {
             System.out.println("6. Ghi nhiều log (concurrency): DB (logs_batch) + file ./logs/");
             System.out.println("7. Phân tích log (log_all.csv) bằng fixedThreadPool");
             System.out.println("8. Phân tích log (log_all.csv) bằng ForkJoin");
+            System.out.println("9. Đếm số lần xuất hiện từ khóa (inverted index)");
+            System.out.println("10. Tra cứu file + dòng chứa từ khóa (inverted index)");
+            System.out.println("11. Phân tích log nhiều tiến trình (coordinator + worker)");
             System.out.println("0. Thoát");
             System.out.print("Chọn: ");
 
@@ -68,6 +71,21 @@ public class App {
                     System.out.println("Phân tích log (log_all.csv) bằng ForkJoin:");
                     service.analyzeLargeLogWithForkJoin("forkjoin");
                 }
+                case "9" -> {
+                    System.out.print("Từ khóa: ");
+                    service.countKeyword(sc.nextLine().trim());
+                }
+                case "10" -> {
+                    System.out.print("Từ khóa: ");
+                    service.lookupKeyword(sc.nextLine().trim());
+                }
+                case "11" -> {
+                    System.out.print("Nhập file hoặc thư mục log (VD: src/main/resources/logs/log_all.csv): ");
+                    String path = sc.nextLine().trim();
+                    System.out.print("Số worker local: ");
+                    int workers = Integer.parseInt(sc.nextLine().trim());
+                    service.analyzeDistributed(path, workers);
+                }
                 case "0" -> {
                     System.out.println("Bye!");
                     return;
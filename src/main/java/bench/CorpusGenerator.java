@@ -0,0 +1,182 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Sinh bộ log giả lập có tính tất định (cùng seed + tham số -> cùng nội dung từng byte):
+ * - thư mục nhiều file .txt theo dạng src/main/resources/logs/log1.txt ("yyyy-MM-dd HH:mm:ss LEVEL message")
+ * - một file CSV lớn theo dạng log_all.csv (timestamp,level,user_id,action,status,message)
+ * Có thể chỉnh tỉ lệ level, mật độ từ khóa "error" trong message và số từ mỗi message.
+ * Chạy: java -cp ... bench.CorpusGenerator --out=bench_corpus --files=10000 --lines=20 --csvMb=2048 --seed=42
+ */
+public class CorpusGenerator {
+    private static final String[] WORDS = {
+            "request", "response", "user", "session", "cache", "database", "connection", "timeout", "retry",
+            "payload", "service", "handler", "queue", "worker", "thread", "memory", "disk", "latency",
+            "started", "completed", "failed", "opened", "closed", "received", "sent", "processed", "skipped"
+    };
+    private static final String[] ACTIONS = {"login", "logout", "click_button", "view_page", "upload", "download", "search"};
+    private static final String[] STATUSES = {"success", "fail"};
+    private static final long BASE_EPOCH_SECOND = 1_704_067_200L; // 2024-01-01 00:00:00
+
+    private final long seed;
+    private final String[] levels;
+    private final int[] levelCumulative;
+    private final double keywordDensity;
+    private final int wordsPerLine;
+
+    /**
+     * @param seed           seed gốc; mỗi file dùng một luồng random riêng sinh từ seed nên có thể sinh song song
+     * @param levelMix       trọng số level, VD {INFO=70, WARN=15, ERROR=10, DEBUG=5}
+     * @param keywordDensity xác suất một message chứa thêm từ "error" (ngoài level ERROR)
+     * @param wordsPerLine   số từ trung bình của message (dao động ±50%)
+     */
+    public CorpusGenerator(long seed, Map<String, Integer> levelMix, double keywordDensity, int wordsPerLine) {
+        this.seed = seed;
+        this.levels = levelMix.keySet().toArray(new String[0]);
+        this.levelCumulative = new int[levels.length];
+        int sum = 0;
+        for (int i = 0; i < levels.length; i++) {
+            sum += levelMix.get(levels[i]);
+            levelCumulative[i] = sum;
+        }
+        if (sum <= 0) throw new IllegalArgumentException("Tổng trọng số level phải > 0");
+        this.keywordDensity = keywordDensity;
+        this.wordsPerLine = Math.max(1, wordsPerLine);
+    }
+
+    // Sinh `files` file log_N.txt, mỗi file `linesPerFile` dòng (song song, kết quả không phụ thuộc thứ tự)
+    public void generateDirectory(Path dir, int files, int linesPerFile) throws IOException {
+        Files.createDirectories(dir);
+        try {
+            IntStream.rangeClosed(1, files).parallel().forEach(i -> {
+                SplittableRandom rnd = randomFor(i);
+                Path file = dir.resolve("log_" + i + ".txt");
+                try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                    StringBuilder sb = new StringBuilder(256);
+                    for (int line = 0; line < linesPerFile; line++) {
+                        sb.setLength(0);
+                        appendTimestamp(sb, BASE_EPOCH_SECOND + (long) i * linesPerFile + line);
+                        sb.append(' ').append(nextLevel(rnd)).append(' ');
+                        appendMessage(sb, rnd);
+                        sb.append('\n');
+                        out.append(sb);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Sinh file CSV có header, dừng khi đạt xấp xỉ targetBytes
+    public void generateCsv(Path file, long targetBytes) throws IOException {
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        SplittableRandom rnd = randomFor(0);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            String header = "timestamp,level,user_id,action,status,message\n";
+            out.write(header);
+            long written = header.length();
+            StringBuilder sb = new StringBuilder(256);
+            for (long line = 0; written < targetBytes; line++) {
+                sb.setLength(0);
+                appendTimestamp(sb, BASE_EPOCH_SECOND + line);
+                sb.append(',').append(nextLevel(rnd))
+                        .append(",user").append(1 + rnd.nextInt(50))
+                        .append(',').append(ACTIONS[rnd.nextInt(ACTIONS.length)])
+                        .append(',').append(STATUSES[rnd.nextInt(STATUSES.length)])
+                        .append(',');
+                appendMessage(sb, rnd);
+                sb.append('\n');
+                out.append(sb);
+                written += sb.length(); // nội dung toàn ASCII nên số ký tự = số byte
+            }
+        }
+    }
+
+    /* ===================== Helpers ===================== */
+
+    private SplittableRandom randomFor(int stream) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + stream);
+    }
+
+    private String nextLevel(SplittableRandom rnd) {
+        int r = rnd.nextInt(levelCumulative[levelCumulative.length - 1]);
+        for (int i = 0; i < levelCumulative.length; i++) {
+            if (r < levelCumulative[i]) return levels[i];
+        }
+        return levels[levels.length - 1];
+    }
+
+    private void appendMessage(StringBuilder sb, SplittableRandom rnd) {
+        int half = Math.max(1, wordsPerLine / 2);
+        int n = wordsPerLine - half + rnd.nextInt(2 * half + 1);
+        int keywordAt = rnd.nextDouble() < keywordDensity ? rnd.nextInt(Math.max(1, n)) : -1;
+        for (int w = 0; w < n; w++) {
+            if (w > 0) sb.append(' ');
+            sb.append(w == keywordAt ? "error" : WORDS[rnd.nextInt(WORDS.length)]);
+        }
+    }
+
+    // Ghi "yyyy-MM-dd HH:mm:ss" (UTC) mà không tạo LocalDateTime cho mỗi dòng
+    private static void appendTimestamp(StringBuilder sb, long epochSecond) {
+        long days = Math.floorDiv(epochSecond, 86_400L);
+        int secs = (int) Math.floorMod(epochSecond, 86_400L);
+        LocalDate d = LocalDate.ofEpochDay(days);
+        sb.append(d.getYear()).append('-');
+        pad2(sb, d.getMonthValue()).append('-');
+        pad2(sb, d.getDayOfMonth()).append(' ');
+        pad2(sb, secs / 3600).append(':');
+        pad2(sb, secs / 60 % 60).append(':');
+        pad2(sb, secs % 60);
+    }
+
+    private static StringBuilder pad2(StringBuilder sb, int v) {
+        if (v < 10) sb.append('0');
+        return sb.append(v);
+    }
+
+    // Đọc "INFO:70,WARN:15,ERROR:10,DEBUG:5"
+    static Map<String, Integer> parseLevelMix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.trim().split(":");
+            mix.put(kv[0].trim().toUpperCase(), Integer.parseInt(kv[1].trim()));
+        }
+        return mix;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> opts = HarnessOptions.parse(args);
+        CorpusGenerator gen = new CorpusGenerator(
+                Long.parseLong(opts.getOrDefault("seed", "42")),
+                parseLevelMix(opts.getOrDefault("levels", "INFO:70,WARN:15,ERROR:10,DEBUG:5")),
+                Double.parseDouble(opts.getOrDefault("keywordDensity", "0.05")),
+                Integer.parseInt(opts.getOrDefault("words", "8")));
+        Path out = Paths.get(opts.getOrDefault("out", "bench_corpus"));
+        int files = Integer.parseInt(opts.getOrDefault("files", "10000"));
+        long csvMb = Long.parseLong(opts.getOrDefault("csvMb", "64"));
+
+        if (files > 0) {
+            gen.generateDirectory(out.resolve("logs"), files, Integer.parseInt(opts.getOrDefault("lines", "20")));
+            System.out.println("📄 Đã sinh " + files + " file vào " + out.resolve("logs"));
+        }
+        if (csvMb > 0) {
+            gen.generateCsv(out.resolve("log_all.csv"), csvMb * 1024 * 1024);
+            System.out.println("📄 Đã sinh " + out.resolve("log_all.csv") + " (~" + csvMb + " MB)");
+        }
+    }
+}
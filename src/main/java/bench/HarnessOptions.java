@@ -0,0 +1,23 @@
+package bench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Đọc tham số dòng lệnh dạng --key=value (hoặc --flag) cho các công cụ đo hiệu năng.
+ */
+final class HarnessOptions {
+    private HarnessOptions() {
+    }
+
+    static Map<String, String> parse(String[] args) {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--")) throw new IllegalArgumentException("Tham số không hợp lệ: " + a);
+            int eq = a.indexOf('=');
+            if (eq < 0) opts.put(a.substring(2), "true");
+            else opts.put(a.substring(2, eq), a.substring(eq + 1));
+        }
+        return opts;
+    }
+}
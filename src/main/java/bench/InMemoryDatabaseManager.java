@@ -0,0 +1,97 @@
+package bench;
+
+import db.DatabaseManager;
+import model.LogResultBuffer;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+/**
+ * DB giả lập cho harness đo hiệu năng: không kết nối MySQL mà chạy đúng saveBatch thật của DatabaseManager
+ * (transaction, bind từng cột, addBatch / executeBatch mỗi 50 dòng) trên một Connection / PreparedStatement
+ * JDBC không làm gì, rồi đếm số dòng được executeBatch + thời gian ghi.
+ * Nhờ vậy số liệu DB rows/s đo được chi phí phía ứng dụng, không phụ thuộc vào máy chủ DB.
+ */
+public class InMemoryDatabaseManager extends DatabaseManager {
+    private long rows;
+    private long writeNanos;
+    private long checksum; // giữ giá trị đã bind để JIT không bỏ qua
+    private int batched;   // số dòng đã addBatch nhưng chưa executeBatch
+
+    public InMemoryDatabaseManager() {
+        super(false);
+    }
+
+    @Override
+    public synchronized void saveBatch(LogResultBuffer results, String table) {
+        long start = System.nanoTime();
+        super.saveBatch(results, table);
+        writeNanos += System.nanoTime() - start;
+    }
+
+    // Connection giả: prepareStatement trả về PreparedStatement giả, các lệnh khác không làm gì
+    @Override
+    protected Connection getConnection() {
+        PreparedStatement ps = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "setString" -> {
+                        checksum += ((String) args[1]).length();
+                        yield null;
+                    }
+                    case "setInt" -> {
+                        checksum += (Integer) args[1];
+                        yield null;
+                    }
+                    case "setTimestamp" -> {
+                        checksum += ((Timestamp) args[1]).getTime();
+                        yield null;
+                    }
+                    case "addBatch" -> {
+                        batched++;
+                        yield null;
+                    }
+                    case "executeBatch" -> {
+                        int[] counts = new int[batched];
+                        Arrays.fill(counts, 1);
+                        rows += batched;
+                        batched = 0;
+                        yield counts;
+                    }
+                    case "clearBatch" -> {
+                        batched = 0;
+                        yield null;
+                    }
+                    default -> defaultValue(method.getReturnType());
+                });
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> method.getName().equals("prepareStatement")
+                        ? ps : defaultValue(method.getReturnType()));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        return null;
+    }
+
+    public synchronized long getRows() {
+        return rows;
+    }
+
+    public synchronized long getWriteNanos() {
+        return writeNanos;
+    }
+
+    public synchronized long getChecksum() {
+        return checksum;
+    }
+
+    public synchronized void reset() {
+        rows = 0;
+        writeNanos = 0;
+    }
+}
@@ -0,0 +1,361 @@
+package bench;
+
+import service.LogAnalyzerService;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Harness đo thông lượng end-to-end: sinh (hoặc dùng lại) bộ log tất định bằng CorpusGenerator,
+ * chạy analyzeLogs, analyzeLargeLogWithThreadPool, analyzeLargeLogWithForkJoin với DB giả lập,
+ * ghi files/s, MB/s, peak RSS, peak heap, DB rows/s (trung vị qua nhiều lần chạy) vào file CSV,
+ * và so với baseline để phát hiện hồi quy trước khi deploy.
+ * Mỗi kịch bản chạy trong một JVM con riêng (cùng tùy chọn JVM + classpath với tiến trình harness), nên peak RSS
+ * và trạng thái JIT / heap không phụ thuộc vào thứ tự các kịch bản.
+ * Chạy:
+ * <pre>
+ * java -Xmx4g -cp target/classes bench.ThroughputHarness --files=20000 --lines=20 --csvMb=512 \
+ *      --iterations=5 --warmup=1 --out=bench_results.csv --baseline=bench_baseline.csv --tolerance=0.10
+ * </pre>
+ * Thoát với mã 1 nếu MB/s giảm hoặc peak RSS tăng quá tolerance so với baseline cùng bộ log.
+ */
+public class ThroughputHarness {
+    private static final int EXIT_OOM = 3; // mã thoát của JVM con khi kịch bản bị OutOfMemoryError
+    private static final String CSV_HEADER = "run_at,label,scenario,corpus,cores,java,max_heap_mb,iterations,status,"
+            + "seconds,files_per_s,mb_per_s,peak_rss_mb,peak_heap_mb,db_rows,db_rows_per_s";
+
+    // Kết quả một lần chạy một kịch bản
+    private static final class Sample {
+        double seconds;
+        double filesPerSec;
+        double mbPerSec;
+        double peakRssMb;
+        double peakHeapMb;
+        long dbRows;
+        double dbRowsPerSec;
+
+        // Một dòng trong file kết quả của JVM con
+        String toLine() {
+            return seconds + "," + filesPerSec + "," + mbPerSec + "," + peakRssMb + "," + peakHeapMb + ","
+                    + dbRows + "," + dbRowsPerSec;
+        }
+
+        static Sample parse(String line) {
+            String[] c = line.split(",");
+            Sample s = new Sample();
+            s.seconds = Double.parseDouble(c[0]);
+            s.filesPerSec = Double.parseDouble(c[1]);
+            s.mbPerSec = Double.parseDouble(c[2]);
+            s.peakRssMb = Double.parseDouble(c[3]);
+            s.peakHeapMb = Double.parseDouble(c[4]);
+            s.dbRows = Long.parseLong(c[5]);
+            s.dbRowsPerSec = Double.parseDouble(c[6]);
+            return s;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> opts = HarnessOptions.parse(args);
+        long seed = Long.parseLong(opts.getOrDefault("seed", "42"));
+        int files = Integer.parseInt(opts.getOrDefault("files", "10000"));
+        int lines = Integer.parseInt(opts.getOrDefault("lines", "20"));
+        long csvMb = Long.parseLong(opts.getOrDefault("csvMb", "64"));
+        String levels = opts.getOrDefault("levels", "INFO:70,WARN:15,ERROR:10,DEBUG:5");
+        double keywordDensity = Double.parseDouble(opts.getOrDefault("keywordDensity", "0.05"));
+        int words = Integer.parseInt(opts.getOrDefault("words", "8"));
+        int warmup = Integer.parseInt(opts.getOrDefault("warmup", "1"));
+        int iterations = Integer.parseInt(opts.getOrDefault("iterations", "3"));
+        double tolerance = Double.parseDouble(opts.getOrDefault("tolerance", "0.10"));
+        String label = opts.getOrDefault("label", "local");
+        List<String> scenarios = Arrays.asList(opts.getOrDefault("scenarios", "analyzeLogs,threadPool,forkJoin").split(","));
+        Path work = Paths.get(opts.getOrDefault("work", "bench_work"));
+        Path out = Paths.get(opts.getOrDefault("out", "bench_results.csv"));
+
+        // Bộ log được tạo lại chỉ khi tham số thay đổi, nên các lần chạy đo trên cùng dữ liệu
+        String corpus = "seed=" + seed + ";files=" + files + ";lines=" + lines + ";csvMb=" + csvMb
+                + ";levels=" + levels + ";keywordDensity=" + keywordDensity + ";words=" + words;
+        Path corpusDir = work.resolve("corpus-" + Integer.toHexString(corpus.hashCode()));
+        Path logsDir = corpusDir.resolve("logs");
+        Path csvFile = corpusDir.resolve("log_all.csv");
+        Path marker = corpusDir.resolve("corpus.spec");
+        if (!Files.exists(marker) || !Files.readString(marker).equals(corpus)) {
+            System.out.println("Sinh bộ log: " + corpus);
+            CorpusGenerator gen = new CorpusGenerator(seed, CorpusGenerator.parseLevelMix(levels), keywordDensity, words);
+            gen.generateDirectory(logsDir, files, lines);
+            gen.generateCsv(csvFile, csvMb * 1024 * 1024);
+            Files.writeString(marker, corpus);
+        }
+        // JVM con: chạy warmup + iterations của một kịch bản rồi ghi từng lần đo vào file --samples
+        if (opts.containsKey("child")) {
+            runScenario(opts.get("child"), warmup, iterations, work, logsDir, csvFile, Paths.get(opts.get("samples")));
+            return;
+        }
+
+        Map<String, String> rows = new LinkedHashMap<>();
+        for (String scenario : scenarios) {
+            String name = scenario.trim();
+            Path samplesFile = Files.createDirectories(work.resolve("run")).resolve(name + ".samples");
+            Files.deleteIfExists(samplesFile);
+            int exit = forkScenario(args, name, samplesFile);
+            // oom: ghi nhận để thấy ngay kịch bản không chịu được kích thước bộ log; error: JVM con lỗi khác
+            String status = exit == 0 ? "ok" : exit == EXIT_OOM ? "oom" : "error";
+            List<Sample> samples = new ArrayList<>();
+            if (exit == 0) {
+                for (String line : Files.readAllLines(samplesFile)) samples.add(Sample.parse(line));
+            }
+            rows.put(name, toCsvRow(label, name, corpus, iterations, status, median(samples)));
+        }
+
+        // In bảng kết quả
+        System.out.println();
+        System.out.println(CSV_HEADER);
+        rows.values().forEach(System.out::println);
+
+        // So với baseline trước khi ghi, để --baseline trùng --out không so lần chạy này với chính nó
+        boolean regressed = opts.containsKey("baseline")
+                && compareWithBaseline(Paths.get(opts.get("baseline")), rows, corpus, tolerance);
+
+        if (!Files.exists(out)) Files.writeString(out, CSV_HEADER + System.lineSeparator());
+        Files.write(out, rows.values(), StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        System.out.println("📄 Đã ghi kết quả vào " + out);
+
+        if (regressed) System.exit(1);
+    }
+
+    // Chạy lại harness với cùng tùy chọn JVM (-Xmx...), classpath và tham số, thêm --child để chỉ chạy một kịch bản
+    private static int forkScenario(String[] args, String scenario, Path samplesFile)
+            throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        cmd.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(ThroughputHarness.class.getName());
+        cmd.addAll(Arrays.asList(args));
+        cmd.add("--child=" + scenario);
+        cmd.add("--samples=" + samplesFile);
+        ProcessBuilder pb = new ProcessBuilder(cmd);
+        pb.inheritIO();
+        return pb.start().waitFor();
+    }
+
+    // Trong JVM con: số file + tổng dung lượng tính trước, ngoài khoảng thời gian được đo; OOM -> thoát với EXIT_OOM
+    private static void runScenario(String scenario, int warmup, int iterations, Path work, Path logsDir, Path csvFile,
+                                    Path samplesFile) throws IOException {
+        long[] logsTotals = totals(logsDir);
+        long csvBytes = Files.size(csvFile);
+        InMemoryDatabaseManager db = new InMemoryDatabaseManager();
+        List<String> lines = new ArrayList<>();
+        try {
+            for (int i = 0; i < warmup + iterations; i++) {
+                Sample s = runOnce(scenario, db, work, logsDir, logsTotals, csvFile, csvBytes);
+                if (i >= warmup) lines.add(s.toLine());
+            }
+        } catch (OutOfMemoryError e) {
+            System.exit(EXIT_OOM);
+        }
+        Files.write(samplesFile, lines);
+    }
+
+    // Chạy một kịch bản một lần trên index tạm mới để các lần chạy không ảnh hưởng nhau
+    // logsTotals = {số file, tổng byte} của logsDir; kích thước được tính trước nên không nằm trong thời gian đo
+    private static Sample runOnce(String scenario, InMemoryDatabaseManager db, Path work, Path logsDir, long[] logsTotals,
+                                  Path csvFile, long csvBytes) throws IOException {
+        Path runDir = Files.createDirectories(work.resolve("run"));
+        deleteRecursively(runDir.resolve("index"));
+        LogAnalyzerService service = new LogAnalyzerService(db, runDir.resolve("index").toString());
+        String report = runDir.resolve(scenario + "_result.txt").toString();
+
+        db.reset();
+        System.gc();
+        resetPeaks();
+        long start = System.nanoTime();
+        long files;
+        long bytes;
+        switch (scenario) {
+            case "analyzeLogs" -> {
+                service.analyzeLogs(logsDir.toString(), report);
+                files = logsTotals[0];
+                bytes = logsTotals[1];
+            }
+            case "threadPool" -> {
+                service.analyzeLargeLogWithThreadPool(csvFile.toString(), report);
+                files = 1;
+                bytes = csvBytes;
+            }
+            case "forkJoin" -> {
+                service.analyzeLargeLogWithForkJoin(csvFile.toString(), report);
+                files = 1;
+                bytes = csvBytes;
+            }
+            default -> throw new IllegalArgumentException("Kịch bản không hợp lệ: " + scenario);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Sample s = new Sample();
+        s.seconds = seconds;
+        s.filesPerSec = files / seconds;
+        s.mbPerSec = bytes / (1024.0 * 1024.0) / seconds;
+        s.peakRssMb = peakRssMb();
+        s.peakHeapMb = peakHeapMb();
+        s.dbRows = db.getRows();
+        s.dbRowsPerSec = db.getWriteNanos() == 0 ? 0 : db.getRows() / (db.getWriteNanos() / 1e9);
+        return s;
+    }
+
+    // Trung vị từng chỉ số để giảm ảnh hưởng của một lần chạy bất thường
+    private static Sample median(List<Sample> samples) {
+        Sample m = new Sample();
+        if (samples.isEmpty()) return m;
+        m.seconds = median(samples, x -> x.seconds);
+        m.filesPerSec = median(samples, x -> x.filesPerSec);
+        m.mbPerSec = median(samples, x -> x.mbPerSec);
+        m.peakRssMb = median(samples, x -> x.peakRssMb);
+        m.peakHeapMb = median(samples, x -> x.peakHeapMb);
+        m.dbRows = samples.get(0).dbRows;
+        m.dbRowsPerSec = median(samples, x -> x.dbRowsPerSec);
+        return m;
+    }
+
+    private static double median(List<Sample> samples, java.util.function.ToDoubleFunction<Sample> f) {
+        double[] v = samples.stream().mapToDouble(f).sorted().toArray();
+        return v.length % 2 == 1 ? v[v.length / 2] : (v[v.length / 2 - 1] + v[v.length / 2]) / 2;
+    }
+
+    private static String toCsvRow(String label, String scenario, String corpus, int iterations, String status, Sample s) {
+        return String.join(",", LocalDateTime.now().withNano(0).toString(), label, scenario, "\"" + corpus + "\"",
+                String.valueOf(Runtime.getRuntime().availableProcessors()), System.getProperty("java.version"),
+                String.valueOf(Runtime.getRuntime().maxMemory() / (1024 * 1024)), String.valueOf(iterations), status,
+                fmt(s.seconds), fmt(s.filesPerSec), fmt(s.mbPerSec), fmt(s.peakRssMb), fmt(s.peakHeapMb),
+                String.valueOf(s.dbRows), fmt(s.dbRowsPerSec));
+    }
+
+    /*
+     * So với dòng cuối cùng trong baseline có cùng kịch bản + bộ log.
+     * Hồi quy: MB/s thấp hơn (1 - tolerance) lần, hoặc peak RSS cao hơn (1 + tolerance) lần, hoặc bị OOM.
+     */
+    private static boolean compareWithBaseline(Path baseline, Map<String, String> rows, String corpus, double tolerance)
+            throws IOException {
+        if (!Files.exists(baseline)) {
+            System.out.println("Chưa có baseline " + baseline + ", bỏ qua so sánh.");
+            return false;
+        }
+        Map<String, String[]> base = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(baseline)) {
+            String[] c = splitCsv(line);
+            if (c.length < 16 || c[0].equals("run_at") || !c[3].equals(corpus)) continue;
+            base.put(c[2], c);
+        }
+
+        boolean regression = false;
+        for (Map.Entry<String, String> e : rows.entrySet()) {
+            String[] b = base.get(e.getKey());
+            if (b == null) continue;
+            String[] cur = splitCsv(e.getValue());
+            double mbNow = Double.parseDouble(cur[11]), mbBase = Double.parseDouble(b[11]);
+            double rssNow = Double.parseDouble(cur[12]), rssBase = Double.parseDouble(b[12]);
+            boolean bad = !cur[8].equals("ok")
+                    || mbNow < mbBase * (1 - tolerance)
+                    || (rssBase > 0 && rssNow > rssBase * (1 + tolerance));
+            System.out.printf("%-12s MB/s %10s -> %-10s peak RSS %8s -> %-8s %s%n",
+                    e.getKey(), b[11], cur[11], b[12], cur[12], bad ? "❌ HỒI QUY" : "✅ OK");
+            regression |= bad;
+        }
+        return regression;
+    }
+
+    /* ===================== Helpers ===================== */
+
+    // Đặt lại peak RSS (VmHWM) của tiến trình (Linux) và peak của các vùng heap
+    private static void resetPeaks() {
+        try {
+            Files.writeString(Paths.get("/proc/self/clear_refs"), "5");
+        } catch (IOException | UnsupportedOperationException e) {
+            // Không phải Linux hoặc không có quyền: peak RSS sẽ là peak từ đầu tiến trình
+        }
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    // Peak RSS từ /proc/self/status (VmHWM), -1 nếu không đọc được
+    private static double peakRssMb() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("\\D+", "")) / 1024.0;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // bỏ qua
+        }
+        return -1;
+    }
+
+    private static double peakHeapMb() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak / (1024.0 * 1024.0);
+    }
+
+    // {số file, tổng byte} của các file trong thư mục
+    private static long[] totals(Path dir) throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.mapToLong(ThroughputHarness::sizeOf).collect(() -> new long[2],
+                    (acc, size) -> { acc[0]++; acc[1] += size; },
+                    (a, b) -> { a[0] += b[0]; a[1] += b[1]; });
+        }
+    }
+
+    private static long sizeOf(Path p) {
+        try {
+            return Files.size(p);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> s = Files.walk(dir)) {
+            for (Path p : s.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+
+    private static String fmt(double v) {
+        return String.format(java.util.Locale.ROOT, "%.2f", v);
+    }
+
+    // Tách một dòng CSV đơn giản (chỉ cột corpus có dấu ngoặc kép)
+    private static String[] splitCsv(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+        for (char ch : line.toCharArray()) {
+            if (ch == '"') quoted = !quoted;
+            else if (ch == ',' && !quoted) {
+                out.add(sb.toString());
+                sb.setLength(0);
+            } else sb.append(ch);
+        }
+        out.add(sb.toString());
+        return out.toArray(new String[0]);
+    }
+}
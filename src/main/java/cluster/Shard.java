@@ -0,0 +1,51 @@
+package cluster;
+
+/**
+ * Một phần việc giao cho worker: đoạn byte [start, end) của một file.
+ * Shard sở hữu các dòng BẮT ĐẦU trong đoạn này, nên ranh giới không cần rơi đúng vào ký tự xuống dòng.
+ * skipHeader: dòng đầu file chứa "timestamp" là header CSV, không đếm (chỉ có tác dụng với shard bắt đầu từ 0).
+ */
+public class Shard {
+    private final String path;
+    private final long start;
+    private final long end;
+    private final boolean skipHeader;
+    private int attempts;
+
+    public Shard(String path, long start, long end) {
+        this(path, start, end, false);
+    }
+
+    public Shard(String path, long start, long end, boolean skipHeader) {
+        this.path = path;
+        this.start = start;
+        this.end = end;
+        this.skipHeader = skipHeader;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public boolean isSkipHeader() {
+        return skipHeader;
+    }
+
+    // Số lần shard đã được giao (tăng lên mỗi khi worker chết giữa chừng)
+    int nextAttempt() {
+        return ++attempts;
+    }
+
+    @Override
+    public String toString() {
+        return path + "[" + start + ", " + end + ")";
+    }
+}
@@ -0,0 +1,285 @@
+package cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Coordinator cho chế độ phân tích nhiều tiến trình: chia file thành shard (theo file hoặc theo đoạn byte),
+ * giao cho các worker qua socket, gộp số từ / số keyword theo từng file.
+ * Worker chết (mất kết nối / quá thời gian) thì shard của nó được đưa lại vào hàng đợi cho worker khác;
+ * tiến trình worker local thoát khi còn việc thì được khởi động lại (tối đa MAX_RESTARTS_PER_WORKER lần mỗi worker).
+ * Nếu không còn worker nào sống / kết nối quá lâu trong khi vẫn còn shard, run() báo lỗi thay vì chờ mãi.
+ * Local: localWorkers > 0, bind 127.0.0.1. Nhiều máy: bind địa chỉ thật và chạy ShardWorker trên các máy khác.
+ * Worker phải gửi token chung ngay khi kết nối, sai token thì bị ngắt trước khi nhận shard. Bind địa chỉ không phải
+ * loopback bắt buộc có token (-Dcoordinator.token); chạy local không có token thì sinh token ngẫu nhiên cho worker con.
+ */
+public class ShardCoordinator {
+    private static final int MAX_ATTEMPTS = 3;                // số lần giao lại tối đa cho một shard
+    private static final int SHARD_TIMEOUT_MS = 10 * 60_000;  // worker không trả lời trong 10 phút coi như chết
+    private static final int AUTH_TIMEOUT_MS = 10_000;        // thời gian chờ worker gửi token
+    private static final int MAX_RESTARTS_PER_WORKER = 3;     // tổng lượt khởi động lại = localWorkers * 3
+    private static final long LOCAL_IDLE_TIMEOUT_MS = 60_000;   // worker local sống nhưng không kết nối quá 60s -> dừng
+    private static final long REMOTE_IDLE_TIMEOUT_MS = 5 * 60_000; // chờ worker máy khác kết nối tối đa 5 phút
+
+    private final String bindHost;
+    private final int port;
+    private final int localWorkers;
+    private final long shardSize;
+    private final String configuredToken; // null: chưa đặt token
+    private final String token;
+
+    private final BlockingQueue<Shard> pending = new LinkedBlockingQueue<>();
+    private final Map<String, long[]> totals = new LinkedHashMap<>();
+    private final List<Process> processes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connected = new AtomicInteger(); // số worker đang kết nối
+    private final AtomicInteger restarts = new AtomicInteger();
+    private CountDownLatch remaining;
+    private volatile IOException failure;
+    private volatile boolean finished;
+    private int boundPort;
+
+    // token: token chung worker phải gửi (null -> chỉ cho phép bind loopback, token ngẫu nhiên cho worker local)
+    public ShardCoordinator(String bindHost, int port, int localWorkers, long shardSize, String token) {
+        this.bindHost = bindHost;
+        this.port = port;
+        this.localWorkers = localWorkers;
+        this.shardSize = shardSize;
+        this.configuredToken = token == null || token.isEmpty() ? null : token;
+        if (configuredToken != null) {
+            this.token = configuredToken;
+        } else {
+            byte[] random = new byte[16];
+            new SecureRandom().nextBytes(random);
+            this.token = HexFormat.of().formatHex(random);
+        }
+    }
+
+    /*
+     * Chia file (hoặc mọi file trong thư mục) thành các shard tối đa shardSize byte.
+     * Chỉ một file đơn (CSV như analyzeLargeLog*) mới bỏ header; file trong thư mục đếm đủ mọi dòng như analyzeLogs.
+     */
+    public List<Shard> split(String inputPath) throws IOException {
+        Path input = Paths.get(inputPath);
+        boolean skipHeader = !Files.isDirectory(input);
+        List<Path> files;
+        if (!skipHeader) {
+            try (Stream<Path> s = Files.list(input)) {
+                files = s.filter(Files::isRegularFile).sorted().toList();
+            }
+        } else {
+            files = List.of(input);
+        }
+
+        List<Shard> shards = new ArrayList<>();
+        for (Path f : files) {
+            String path = f.toAbsolutePath().toString();
+            long size = Files.size(f);
+            if (size == 0) {
+                shards.add(new Shard(path, 0, 0, skipHeader));
+                continue;
+            }
+            for (long start = 0; start < size; start += shardSize) {
+                shards.add(new Shard(path, start, Math.min(start + shardSize, size), skipHeader));
+            }
+        }
+        return shards;
+    }
+
+    // Chạy toàn bộ: trả về {số từ, số keyword} theo đường dẫn file, theo thứ tự shard
+    public Map<String, long[]> run(List<Shard> shards) throws IOException, InterruptedException {
+        if (configuredToken == null && !InetAddress.getByName(bindHost).isLoopbackAddress()) {
+            throw new IOException("Bind " + bindHost + " cho worker máy khác cần token chung: đặt -Dcoordinator.token=<token>");
+        }
+        for (Shard s : shards) totals.putIfAbsent(s.getPath(), new long[2]);
+        pending.addAll(shards);
+        remaining = new CountDownLatch(shards.size());
+
+        ExecutorService handlers = Executors.newCachedThreadPool();
+        try (ServerSocket server = new ServerSocket()) {
+            server.bind(new InetSocketAddress(bindHost, port));
+            boundPort = server.getLocalPort();
+            System.out.println("Coordinator lắng nghe tại " + bindHost + ":" + boundPort + ", " + shards.size() + " shard.");
+
+            // Luồng nhận kết nối từ worker
+            handlers.submit(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        Socket s = server.accept();
+                        handlers.submit(() -> serve(s));
+                    } catch (IOException e) {
+                        if (!server.isClosed()) System.err.println("Lỗi nhận kết nối worker: " + e.getMessage());
+                    }
+                }
+                return null;
+            });
+
+            for (int i = 0; i < localWorkers; i++) launchLocalWorker();
+
+            // Chờ có giới hạn: dừng nếu không còn worker nào làm việc được trong khi vẫn còn shard
+            long idleLimit = localWorkers > 0 ? LOCAL_IDLE_TIMEOUT_MS : REMOTE_IDLE_TIMEOUT_MS;
+            long idleSince = System.currentTimeMillis();
+            while (!remaining.await(1, TimeUnit.SECONDS)) {
+                if (connected.get() > 0) {
+                    idleSince = System.currentTimeMillis();
+                } else if (localWorkers > 0 && restarts.get() >= maxRestarts()
+                        && processes.stream().noneMatch(Process::isAlive)) {
+                    fail(new IOException("Mọi worker local đã thoát và hết lượt khởi động lại, còn "
+                            + remaining.getCount() + " shard"));
+                } else if (System.currentTimeMillis() - idleSince > idleLimit) {
+                    fail(new IOException("Không có worker nào kết nối trong " + idleLimit / 1000 + "s, còn "
+                            + remaining.getCount() + " shard"));
+                }
+            }
+            finished = true;
+        } finally {
+            handlers.shutdown();
+            if (!handlers.awaitTermination(10, TimeUnit.SECONDS)) handlers.shutdownNow();
+            for (Process p : processes) {
+                if (!p.waitFor(5, TimeUnit.SECONDS)) p.destroyForcibly();
+            }
+        }
+
+        if (failure != null) throw failure;
+        return totals;
+    }
+
+    // Phục vụ một worker: kiểm tra token, giao shard, nhận kết quả cho tới khi hết việc hoặc worker chết
+    private Void serve(Socket socket) {
+        Shard current = null;
+        boolean authenticated = false;
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            socket.setSoTimeout(AUTH_TIMEOUT_MS);
+            if (!MessageDigest.isEqual(in.readUTF().getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+                System.err.println("Từ chối kết nối từ " + socket.getRemoteSocketAddress() + ": sai token");
+                return null;
+            }
+            authenticated = true;
+            connected.incrementAndGet();
+            socket.setSoTimeout(SHARD_TIMEOUT_MS);
+            while (true) {
+                current = pending.poll(200, TimeUnit.MILLISECONDS);
+                if (current == null) {
+                    if (remaining.getCount() == 0) {
+                        out.writeByte(ShardWorker.MSG_DONE);
+                        out.flush();
+                        return null;
+                    }
+                    continue;
+                }
+                out.writeByte(ShardWorker.MSG_SHARD);
+                out.writeUTF(current.getPath());
+                out.writeLong(current.getStart());
+                out.writeLong(current.getEnd());
+                out.writeBoolean(current.isSkipHeader());
+                out.flush();
+
+                long wc = in.readLong();
+                long kc = in.readLong();
+                synchronized (totals) {
+                    long[] t = totals.get(current.getPath());
+                    t[0] += wc;
+                    t[1] += kc;
+                }
+                current = null;
+                remaining.countDown();
+            }
+        } catch (IOException e) {
+            if (current != null) reassign(current, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (current != null) pending.add(current);
+        } finally {
+            if (authenticated) connected.decrementAndGet();
+        }
+        return null;
+    }
+
+    // Worker chết giữa chừng: đưa shard về hàng đợi (worker local thay thế do workerExited khởi động)
+    private void reassign(Shard shard, IOException cause) {
+        if (finished) return;
+        if (shard.nextAttempt() >= MAX_ATTEMPTS) {
+            fail(new IOException("Shard " + shard + " lỗi " + MAX_ATTEMPTS + " lần, dừng phân tích", cause));
+            return;
+        }
+        System.err.println("Worker lỗi (" + cause + "), giao lại shard " + shard);
+        pending.add(shard);
+    }
+
+    // Dừng cả lượt chạy: bỏ các shard còn lại và đánh thức run()
+    private void fail(IOException e) {
+        if (failure == null) failure = e;
+        pending.clear();
+        while (remaining.getCount() > 0) remaining.countDown();
+    }
+
+    private int maxRestarts() {
+        return localWorkers * MAX_RESTARTS_PER_WORKER;
+    }
+
+    // Khởi động một JVM worker trên máy này với cùng classpath
+    private void launchLocalWorker() throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String host = bindHost.equals("0.0.0.0") ? "127.0.0.1" : bindHost;
+        ProcessBuilder pb = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ShardWorker.class.getName(), host, String.valueOf(boundPort));
+        pb.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
+        pb.environment().put(ShardWorker.TOKEN_ENV, token); // qua biến môi trường để token không hiện trong danh sách tiến trình
+        Process p = pb.start();
+        processes.add(p);
+        p.onExit().thenAccept(this::workerExited);
+    }
+
+    // Tiến trình worker local thoát khi vẫn còn shard (crash, bị kill, lỗi kết nối...): khởi động lại trong giới hạn
+    private void workerExited(Process p) {
+        if (finished || remaining.getCount() == 0) return;
+        if (restarts.incrementAndGet() > maxRestarts()) {
+            System.err.println("Worker local thoát (mã " + p.exitValue() + "), đã hết lượt khởi động lại.");
+            return;
+        }
+        System.err.println("Worker local thoát (mã " + p.exitValue() + "), khởi động worker thay thế.");
+        try {
+            launchLocalWorker();
+        } catch (IOException e) {
+            System.err.println("Không khởi động được worker thay thế: " + e.getMessage());
+        }
+    }
+
+    // Dùng khi chạy riêng coordinator: java [-Dcoordinator.token=<token>] cluster.ShardCoordinator <input> <localWorkers> [port] [bindHost]
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Cách dùng: java [-Dcoordinator.token=<token>] cluster.ShardCoordinator <file|thư mục> <localWorkers> [port] [bindHost]");
+            System.exit(2);
+        }
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        String host = args.length > 3 ? args[3] : "127.0.0.1";
+        ShardCoordinator c = new ShardCoordinator(host, port, Integer.parseInt(args[1]), 64L * 1024 * 1024,
+                System.getProperty("coordinator.token"));
+        Map<String, long[]> result = c.run(c.split(args[0]));
+        result.forEach((path, t) -> System.out.printf("%-60s %-12d %-15d%n", new File(path).getName(), t[0], t[1]));
+    }
+}
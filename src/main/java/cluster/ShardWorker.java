@@ -0,0 +1,74 @@
+package cluster;
+
+import thread.FileChunkTask;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Socket;
+
+/**
+ * Tiến trình worker: kết nối tới coordinator, gửi token chung, nhận shard, đếm số từ + số "error" rồi gửi kết quả về.
+ * Chạy: java -Dcoordinator.token=&lt;token&gt; -cp log-analyzer.jar cluster.ShardWorker &lt;coordinatorHost&gt; &lt;port&gt;
+ * (hoặc đặt token qua biến môi trường COORDINATOR_TOKEN; worker local do coordinator khởi động nhận token theo cách này).
+ * Trên nhiều máy, các worker phải thấy file log ở cùng đường dẫn (ổ mạng dùng chung).
+ */
+public class ShardWorker {
+    static final byte MSG_SHARD = 1;
+    static final byte MSG_DONE = 0;
+    static final String TOKEN_ENV = "COORDINATOR_TOKEN";
+
+    private static final int CONNECT_RETRIES = 30;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Cách dùng: java -Dcoordinator.token=<token> cluster.ShardWorker <coordinatorHost> <port>");
+            System.exit(2);
+        }
+        String token = System.getProperty("coordinator.token", System.getenv(TOKEN_ENV));
+        if (token == null || token.isEmpty()) {
+            System.err.println("Thiếu token: đặt -Dcoordinator.token=<token> hoặc biến môi trường " + TOKEN_ENV);
+            System.exit(2);
+        }
+        try (Socket socket = connect(args[0], Integer.parseInt(args[1]));
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            out.writeUTF(token); // coordinator kiểm tra token trước khi giao shard
+            out.flush();
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    return; // coordinator đã đóng kết nối
+                }
+                if (type == MSG_DONE) return;
+
+                String path = in.readUTF();
+                long start = in.readLong();
+                long end = in.readLong();
+                boolean skipHeader = in.readBoolean(); // chỉ bật với input là một file CSV, giống analyzeLargeLog*
+                long[] counts = FileChunkTask.countRange(path, start, end, skipHeader);
+                out.writeLong(counts[0]);
+                out.writeLong(counts[1]);
+                out.flush();
+            }
+        }
+    }
+
+    // Worker ở máy khác có thể khởi động trước coordinator nên thử kết nối lại vài lần
+    private static Socket connect(String host, int port) throws IOException, InterruptedException {
+        for (int i = 1; ; i++) {
+            try {
+                return new Socket(host, port);
+            } catch (ConnectException e) {
+                if (i >= CONNECT_RETRIES) throw e;
+                Thread.sleep(1000);
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package db;
 
 import model.LogResult;
+import model.LogResultBuffer;
 import util.DbUtil;
 
 import java.sql.*;
@@ -14,6 +15,16 @@ public class DatabaseManager {
         createTableIfNotExists();
     }
 
+    // Dành cho lớp con không dùng MySQL (VD: DB giả lập khi đo hiệu năng)
+    protected DatabaseManager(boolean createTables) {
+        if (createTables) createTableIfNotExists();
+    }
+
+    // Kết nối dùng cho saveBatch; lớp con có thể thay bằng kết nối khác (VD: JDBC giả lập khi đo hiệu năng)
+    protected Connection getConnection() throws SQLException {
+        return DbUtil.getConnection();
+    }
+
     // Tạo bảng log_analysis và logs_batch nếu chưa tồn tại
     private void createTableIfNotExists() {
         String createMain = """
@@ -109,17 +120,24 @@ public class DatabaseManager {
 
     /* ===================== Batch + Transaction ===================== */
     public void saveBatch(List<LogResult> results, String table) {
+        saveBatch(LogResultBuffer.of(results), table);
+    }
+
+    // Ghi trực tiếp từ các cột của LogResultBuffer, không tạo LogResult cho từng bản ghi
+    public void saveBatch(LogResultBuffer results, String table) {
         String sql = "INSERT INTO " + table + " (filename, word_count, keyword_count, processed_at) VALUES (?,?,?,?)";
         final int BATCH_SIZE = 50;
         Connection c = null;
         PreparedStatement ps = null;
         try {
-            c = DbUtil.getConnection();
+            c = getConnection();
             c.setAutoCommit(false); // bắt đầu transaction
             ps = c.prepareStatement(sql);
 
             int count = 0;
-            for (LogResult r : results) {
+            int total = results.size();
+            LogResultBuffer.Cursor r = results.cursor();
+            while (r.next()) {
                 ps.setString(1, r.getFileName());
                 ps.setInt(2, r.getWordCount());
                 ps.setInt(3, r.getKeywordCount());
@@ -128,7 +146,7 @@ public class DatabaseManager {
                 count++;
 
                 // Nếu đủ batch hoặc là bản ghi cuối cùng thì thực thi batch
-                if (count % BATCH_SIZE == 0 || count == results.size()) {
+                if (count % BATCH_SIZE == 0 || count == total) {
                     System.out.println("Thực thi batch, số bản ghi: " + count);
                     ps.executeBatch();
                     ps.clearBatch();
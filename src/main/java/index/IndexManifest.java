@@ -0,0 +1,108 @@
+package index;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trạng thái đã commit của index, lưu trong file index.manifest (dạng text, ghi tạm rồi rename):
+ * <pre>
+ * format 3
+ * generation 12
+ * next 7
+ * files 10000
+ * segment 3 0      (số segment, thế hệ file xóa seg_3_G.del; 0 = không có file nào bị xóa)
+ * segment 6 12
+ * unindexed /duong/dan/file
+ * </pre>
+ * Manifest khác FORMAT (index tạo bởi phiên bản cũ) được coi như index rỗng: analyzeLogs sẽ index lại từ đầu.
+ * Segment / file .del không có trong manifest là rác của lần ghi bị gián đoạn và sẽ bị LogIndexWriter dọn đi.
+ */
+final class IndexManifest {
+    static final String FILE_NAME = "index.manifest";
+    static final int FORMAT = 3; // tăng khi định dạng segment thay đổi
+
+    long generation;
+    int nextSegment;
+    int fileCount;
+    final Map<Integer, Long> segments = new LinkedHashMap<>(); // số segment -> thế hệ file .del
+    final Set<String> unindexed = new LinkedHashSet<>();
+
+    // Đọc manifest; thư mục chưa có index -> manifest rỗng
+    static IndexManifest read(Path dir) throws IOException {
+        IndexManifest m = new IndexManifest();
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(dir.resolve(FILE_NAME), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return m;
+        }
+        if (lines.isEmpty() || !lines.get(0).equals("format " + FORMAT)) return m;
+        for (String line : lines.subList(1, lines.size())) {
+            int sp = line.indexOf(' ');
+            if (sp < 0) continue;
+            String key = line.substring(0, sp);
+            String value = line.substring(sp + 1);
+            switch (key) {
+                case "generation" -> m.generation = Long.parseLong(value);
+                case "next" -> m.nextSegment = Integer.parseInt(value);
+                case "files" -> m.fileCount = Integer.parseInt(value);
+                case "segment" -> {
+                    String[] parts = value.split(" ");
+                    m.segments.put(Integer.parseInt(parts[0]), Long.parseLong(parts[1]));
+                }
+                case "unindexed" -> m.unindexed.add(value);
+                default -> throw new IOException("Manifest không hợp lệ: " + line);
+            }
+        }
+        return m;
+    }
+
+    // Chỉ đọc số thế hệ (dùng để biết index trên đĩa đã đổi hay chưa)
+    static long readGeneration(Path dir) throws IOException {
+        return read(dir).generation;
+    }
+
+    void write(Path dir) throws IOException {
+        Path tmp = dir.resolve(FILE_NAME + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            out.write("format " + FORMAT + "\n");
+            out.write("generation " + generation + "\n");
+            out.write("next " + nextSegment + "\n");
+            out.write("files " + fileCount + "\n");
+            for (Map.Entry<Integer, Long> e : segments.entrySet()) {
+                out.write("segment " + e.getKey() + " " + e.getValue() + "\n");
+            }
+            for (String path : unindexed) out.write("unindexed " + path + "\n");
+        }
+        Files.move(tmp, dir.resolve(FILE_NAME), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /* ===================== File .del (bitset các file đã bị xóa / thay thế trong segment) ===================== */
+
+    static Path deletesPath(Path dir, int segment, long delGen) {
+        return dir.resolve("seg_" + segment + "_" + delGen + ".del");
+    }
+
+    static BitSet readDeletes(Path dir, int segment, long delGen) throws IOException {
+        if (delGen == 0) return new BitSet();
+        return BitSet.valueOf(Files.readAllBytes(deletesPath(dir, segment, delGen)));
+    }
+
+    static void writeDeletes(Path dir, int segment, long delGen, BitSet deleted) throws IOException {
+        Path file = deletesPath(dir, segment, delGen);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tmp, deleted.toByteArray());
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,121 @@
+package index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trả lời truy vấn đếm / tra cứu từ khóa từ inverted index trên đĩa, không cần đọc lại file log.
+ * Khi mở chỉ đọc manifest, sparse index và file .del của từng segment; mỗi truy vấn tìm kiếm nhị phân rồi đọc
+ * một block từ điển + postings của term được hỏi. Bảng file chỉ được nạp khi lookup cần tên file.
+ * Thread-safe; nên giữ một reader mở và gọi isCurrent() để biết khi nào cần mở lại.
+ */
+public class LogIndexReader implements Closeable {
+    private final Path dir;
+    private final IndexManifest manifest;
+    private final List<Segment> segments = new ArrayList<>();
+    private final List<BitSet> deletes = new ArrayList<>();
+
+    private LogIndexReader(Path dir, IndexManifest manifest) {
+        this.dir = dir;
+        this.manifest = manifest;
+    }
+
+    public static LogIndexReader open(Path dir) throws IOException {
+        LogIndexReader r = new LogIndexReader(dir, IndexManifest.read(dir));
+        try {
+            for (Map.Entry<Integer, Long> e : r.manifest.segments.entrySet()) {
+                r.deletes.add(IndexManifest.readDeletes(dir, e.getKey(), e.getValue()));
+                r.segments.add(Segment.open(dir, e.getKey()));
+            }
+        } catch (IOException e) {
+            r.close();
+            throw e;
+        }
+        return r;
+    }
+
+    // Index trên đĩa còn giống lúc mở reader hay không
+    public boolean isCurrent() throws IOException {
+        return IndexManifest.readGeneration(dir) == manifest.generation;
+    }
+
+    // Số file hiện có trong index
+    public int getFileCount() {
+        return manifest.fileCount;
+    }
+
+    // Các file có trong thư mục đã phân tích nhưng không index được (kết quả truy vấn không tính tới)
+    public List<String> getUnindexedFiles() {
+        return new ArrayList<>(manifest.unindexed);
+    }
+
+    // Tổng số lần xuất hiện của term trong toàn bộ file đã index; term không phải đúng một token -> IllegalArgumentException
+    public long count(String term) throws IOException {
+        String key = TokenCollector.queryToken(term);
+        long total = 0;
+        for (int s = 0; s < segments.size(); s++) {
+            Segment seg = segments.get(s);
+            Segment.TermEntry entry = seg.find(key);
+            if (entry == null) continue;
+            BitSet deleted = deletes.get(s);
+            if (deleted.isEmpty()) {
+                total += entry.totalFreq; // không có file bị xóa -> dùng luôn số đếm trong từ điển
+                continue;
+            }
+            // Chỉ đọc phần doc (docId + số lần xuất hiện), phần offset không được đọc từ đĩa
+            Segment.PostingsReader postings = seg.postings(entry, false);
+            while (postings.next()) {
+                if (!deleted.get(postings.doc)) total += postings.freq;
+            }
+        }
+        return total;
+    }
+
+    // Danh sách file + offset đầu các dòng chứa term (term được tách giống count)
+    public List<Posting> lookup(String term) throws IOException {
+        String key = TokenCollector.queryToken(term);
+        Map<String, List<long[]>> byPath = new LinkedHashMap<>(); // path -> offset của từng doc (file lớn có nhiều doc)
+        for (int s = 0; s < segments.size(); s++) {
+            Segment seg = segments.get(s);
+            Segment.TermEntry entry = seg.find(key);
+            if (entry == null) continue;
+            BitSet deleted = deletes.get(s);
+            List<Segment.FileEntry> files = seg.files();
+            Segment.PostingsReader postings = seg.postings(entry, true);
+            while (postings.next()) {
+                if (deleted.get(postings.doc)) continue;
+                byPath.computeIfAbsent(files.get(postings.doc).path, k -> new ArrayList<>()).add(postings.offsets());
+            }
+        }
+        List<Posting> out = new ArrayList<>(byPath.size());
+        for (Map.Entry<String, List<long[]>> e : byPath.entrySet()) {
+            List<long[]> parts = e.getValue();
+            long[] offsets = parts.get(0);
+            if (parts.size() > 1) {
+                int n = 0;
+                for (long[] part : parts) n += part.length;
+                offsets = new long[n];
+                n = 0;
+                for (long[] part : parts) {
+                    System.arraycopy(part, 0, offsets, n, part.length);
+                    n += part.length;
+                }
+                Arrays.sort(offsets); // các đoạn của một file lớn có thể nằm ở nhiều segment
+            }
+            out.add(new Posting(e.getKey(), offsets));
+        }
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Segment seg : segments) seg.close();
+    }
+}
@@ -0,0 +1,379 @@
+package index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Xây dựng inverted index trên đĩa (token -> danh sách file + offset đầu dòng) theo kiểu tăng dần:
+ * mỗi lần flush ghi ra một segment mới, file nào chưa thay đổi (cùng size + lastModified) thì bỏ qua.
+ * Bản cũ của file bị thay đổi / bị xóa khỏi thư mục được đánh dấu xóa (tombstone) trong file .del của segment;
+ * khi có quá nhiều segment hoặc quá nhiều bản đã xóa, close() gộp tất cả segment thành một và bỏ hẳn postings cũ.
+ * File lớn được index theo từng đoạn (beginFile + addChunk); mỗi đoạn là một doc riêng cùng path.
+ * File không index được được ghi vào manifest để truy vấn báo lại cho người dùng.
+ * Thread-safe: nhiều FileReaderTask / FileChunkTask có thể gọi addFile / addChunk song song.
+ */
+public class LogIndexWriter implements Closeable {
+    private static final long FLUSH_THRESHOLD_BYTES = 32L * 1024 * 1024; // flush khi postings trong RAM vượt 32MB
+    private static final int MERGE_SEGMENT_COUNT = 8;       // gộp khi số segment vượt ngưỡng này
+    private static final double MERGE_DELETED_RATIO = 0.3;  // hoặc khi tỉ lệ bản đã xóa vượt 30%
+
+    private final Path dir;
+    private final IndexManifest manifest;
+    private final Map<String, FileState> files = new HashMap<>();         // path -> bản đang có hiệu lực
+    private final Map<Integer, BitSet> deletes = new HashMap<>();         // segment -> các docId đã xóa
+    private final Map<Integer, Integer> segmentSizes = new HashMap<>();   // segment -> số doc
+    private final Set<Integer> dirtyDeletes = new HashSet<>();
+    private final Map<String, Segment.TermBuffer> terms = new HashMap<>();
+    private final List<Segment.FileEntry> pendingFiles = new ArrayList<>();
+    private final BitSet pendingDeletes = new BitSet();
+    private long pendingBytes;
+    private boolean manifestDirty;
+
+    /** Bản đang có hiệu lực của một file: các vị trí (segment << 32 | docId) chứa nó. */
+    private static final class FileState {
+        final long size;
+        final long lastModified;
+        final List<Long> docs = new ArrayList<>(1);
+
+        FileState(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private LogIndexWriter(Path dir, IndexManifest manifest) {
+        this.dir = dir;
+        this.manifest = manifest;
+    }
+
+    // Mở (hoặc tạo mới) index trong thư mục dir
+    public static LogIndexWriter open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        LogIndexWriter w = new LogIndexWriter(dir, IndexManifest.read(dir));
+        for (Map.Entry<Integer, Long> e : w.manifest.segments.entrySet()) {
+            int number = e.getKey();
+            BitSet deleted = IndexManifest.readDeletes(dir, number, e.getValue());
+            try (Segment seg = Segment.open(dir, number)) {
+                List<Segment.FileEntry> entries = seg.files();
+                for (int doc = 0; doc < entries.size(); doc++) {
+                    if (deleted.get(doc)) continue;
+                    Segment.FileEntry f = entries.get(doc);
+                    FileState state = w.files.computeIfAbsent(f.path, k -> new FileState(f.size, f.lastModified));
+                    state.docs.add(docKey(number, doc));
+                }
+                w.segmentSizes.put(number, seg.fileCount);
+            }
+            w.deletes.put(number, deleted);
+        }
+        w.deleteUnreferenced();
+        return w;
+    }
+
+    // Kiểm tra file đã có trong index và chưa bị thay đổi hay chưa
+    public synchronized boolean needsIndexing(Path file) throws IOException {
+        FileState f = files.get(keyOf(file));
+        return f == null || f.size != Files.size(file) || f.lastModified != Files.getLastModifiedTime(file).toMillis();
+    }
+
+    // Tách token của file (ngoài lock) rồi gộp vào postings trong bộ nhớ, thay thế bản cũ nếu có
+    public void addFile(Path file, String content) throws IOException {
+        TokenCollector tokens = new TokenCollector();
+        tokens.addText(content, 0);
+        String key = keyOf(file);
+        long size = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+
+        synchronized (this) {
+            removeKey(key);
+            FileState state = new FileState(size, lastModified);
+            files.put(key, state);
+            addDoc(key, state, tokens);
+        }
+    }
+
+    // Bắt đầu index lại một file lớn theo từng đoạn: xóa bản cũ, các đoạn được thêm bằng addChunk
+    public void beginFile(Path file) throws IOException {
+        String key = keyOf(file);
+        long size = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        synchronized (this) {
+            removeKey(key);
+            files.put(key, new FileState(size, lastModified));
+        }
+    }
+
+    // Thêm token của một đoạn (offset tính từ đầu file); bỏ qua nếu file đã bị xóa / đánh dấu lỗi sau beginFile
+    public synchronized void addChunk(Path file, TokenCollector tokens) throws IOException {
+        String key = keyOf(file);
+        FileState state = files.get(key);
+        if (state != null) addDoc(key, state, tokens);
+    }
+
+    // File không index được (VD: lỗi đọc một đoạn): xóa phần đã index và ghi nhận để truy vấn báo lại
+    public synchronized void markUnindexed(Path file) {
+        String key = keyOf(file);
+        removeKey(key);
+        manifest.unindexed.add(key);
+        manifestDirty = true;
+    }
+
+    // Xóa file khỏi index (postings của nó không còn được tính từ lần flush tiếp theo)
+    public synchronized void remove(Path file) {
+        removeKey(keyOf(file));
+    }
+
+    // Xóa các file đã index nằm trực tiếp trong folder nhưng không còn trong danh sách present; trả về số file đã xóa
+    public synchronized int removeMissing(Path folder, Set<Path> present) {
+        Path base = folder.toAbsolutePath().normalize();
+        Set<String> keep = new HashSet<>();
+        for (Path p : present) keep.add(keyOf(p));
+        List<String> missing = new ArrayList<>();
+        for (String key : files.keySet()) {
+            if (!keep.contains(key) && base.equals(Path.of(key).getParent())) missing.add(key);
+        }
+        for (String key : missing) removeKey(key);
+        manifestDirty |= manifest.unindexed.removeIf(key -> !keep.contains(key) && base.equals(Path.of(key).getParent()));
+        return missing.size();
+    }
+
+    // Ghi postings đang gom ra segment mới, ghi các file .del đã đổi rồi commit bằng manifest mới
+    public synchronized void flush() throws IOException {
+        long generation = manifest.generation + 1;
+        if (!pendingFiles.isEmpty()) {
+            int number = manifest.nextSegment;
+            List<String> sorted = new ArrayList<>(terms.keySet());
+            sorted.sort(null);
+            try (Segment.Writer out = new Segment.Writer(dir, number)) {
+                for (String term : sorted) {
+                    Segment.TermBuffer t = terms.get(term);
+                    out.addTerm(term, t);
+                }
+                out.finish(pendingFiles);
+            }
+            manifest.nextSegment = number + 1;
+            manifest.segments.put(number, 0L);
+            segmentSizes.put(number, pendingFiles.size());
+            deletes.put(number, (BitSet) pendingDeletes.clone());
+            if (!pendingDeletes.isEmpty()) dirtyDeletes.add(number);
+            terms.clear();
+            pendingFiles.clear();
+            pendingDeletes.clear();
+            pendingBytes = 0;
+            manifestDirty = true;
+        }
+        for (int number : dirtyDeletes) {
+            BitSet deleted = deletes.get(number);
+            if (deleted.cardinality() == segmentSizes.get(number)) {
+                manifest.segments.remove(number); // mọi file trong segment đều đã bị xóa -> bỏ luôn segment
+            } else {
+                IndexManifest.writeDeletes(dir, number, generation, deleted);
+                manifest.segments.put(number, generation);
+            }
+            manifestDirty = true;
+        }
+        dirtyDeletes.clear();
+        if (!manifestDirty) return;
+        commit(generation);
+    }
+
+    // Ghi phần còn lại rồi gộp segment nếu cần
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        if (needsMerge()) merge();
+    }
+
+    /* ===================== Merge ===================== */
+
+    private boolean needsMerge() {
+        if (manifest.segments.size() > MERGE_SEGMENT_COUNT) return true;
+        long total = 0, deleted = 0;
+        for (int number : manifest.segments.keySet()) {
+            total += segmentSizes.get(number);
+            deleted += deletes.get(number).cardinality();
+        }
+        return total > 0 && deleted > total * MERGE_DELETED_RATIO;
+    }
+
+    // Gộp tất cả segment thành một: duyệt song song các từ điển đã sắp xếp, bỏ doc đã xóa và đánh lại docId
+    private void merge() throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        try {
+            for (int number : manifest.segments.keySet()) segments.add(Segment.open(dir, number));
+
+            // docMaps[s][doc] = docId mới, -1 nếu đã xóa
+            List<Segment.FileEntry> merged = new ArrayList<>();
+            int[][] docMaps = new int[segments.size()][];
+            for (int s = 0; s < segments.size(); s++) {
+                Segment seg = segments.get(s);
+                BitSet deleted = deletes.get(seg.number);
+                List<Segment.FileEntry> entries = seg.files();
+                docMaps[s] = new int[entries.size()];
+                for (int doc = 0; doc < entries.size(); doc++) {
+                    if (deleted.get(doc)) {
+                        docMaps[s][doc] = -1;
+                    } else {
+                        docMaps[s][doc] = merged.size();
+                        merged.add(entries.get(doc));
+                    }
+                }
+            }
+
+            int number = manifest.nextSegment;
+            PriorityQueue<MergeCursor> queue = new PriorityQueue<>();
+            for (int s = 0; s < segments.size(); s++) {
+                MergeCursor c = new MergeCursor(s, segments.get(s).terms());
+                if (c.it.next()) queue.add(c);
+            }
+            try (Segment.Writer out = new Segment.Writer(dir, number)) {
+                List<MergeCursor> same = new ArrayList<>();
+                while (!queue.isEmpty()) {
+                    String term = queue.peek().it.entry.term;
+                    same.clear();
+                    while (!queue.isEmpty() && queue.peek().it.entry.term.equals(term)) same.add(queue.poll());
+                    same.sort(null); // theo thứ tự segment để docId mới tăng dần
+
+                    Segment.TermBuffer t = new Segment.TermBuffer();
+                    for (MergeCursor c : same) {
+                        copyPostings(segments.get(c.segment), c.it.entry, docMaps[c.segment], t);
+                        if (c.it.next()) queue.add(c);
+                    }
+                    if (t.docFreq > 0) out.addTerm(term, t);
+                }
+                out.finish(merged);
+            }
+
+            // Cập nhật trạng thái trong bộ nhớ theo segment mới
+            files.values().forEach(f -> f.docs.clear());
+            for (int doc = 0; doc < merged.size(); doc++) {
+                files.get(merged.get(doc).path).docs.add(docKey(number, doc));
+            }
+            manifest.segments.clear();
+            manifest.segments.put(number, 0L);
+            manifest.nextSegment = number + 1;
+            deletes.clear();
+            deletes.put(number, new BitSet());
+            segmentSizes.clear();
+            segmentSizes.put(number, merged.size());
+        } finally {
+            for (Segment seg : segments) seg.close();
+        }
+        commit(manifest.generation + 1);
+    }
+
+    private static void copyPostings(Segment seg, Segment.TermEntry entry, int[] docMap, Segment.TermBuffer out)
+            throws IOException {
+        Segment.PostingsReader postings = seg.postings(entry, true);
+        while (postings.next()) {
+            int doc = docMap[postings.doc];
+            if (doc < 0) continue; // doc đã xóa: nhảy qua offset, không giải mã
+            long[] offsets = postings.offsets();
+            long[] withCount = new long[offsets.length + 1];
+            withCount[0] = offsets.length;
+            System.arraycopy(offsets, 0, withCount, 1, offsets.length);
+            out.add(doc, withCount);
+        }
+    }
+
+    /** Vị trí hiện tại trong từ điển của một segment khi merge. */
+    private static final class MergeCursor implements Comparable<MergeCursor> {
+        final int segment;
+        final Segment.TermIterator it;
+
+        MergeCursor(int segment, Segment.TermIterator it) {
+            this.segment = segment;
+            this.it = it;
+        }
+
+        @Override
+        public int compareTo(MergeCursor o) {
+            int cmp = it.entry.term.compareTo(o.it.entry.term);
+            return cmp != 0 ? cmp : Integer.compare(segment, o.segment);
+        }
+    }
+
+    /* ===================== Helpers ===================== */
+
+    // Thêm một doc (cả file hoặc một đoạn của file) vào segment đang gom; gọi khi đang giữ lock
+    private void addDoc(String key, FileState state, TokenCollector tokens) throws IOException {
+        int doc = pendingFiles.size();
+        pendingFiles.add(new Segment.FileEntry(key, state.size, state.lastModified));
+        state.docs.add(docKey(manifest.nextSegment, doc));
+        for (Map.Entry<String, long[]> e : tokens.terms().entrySet()) {
+            Segment.TermBuffer t = terms.computeIfAbsent(e.getKey(), k -> new Segment.TermBuffer());
+            int before = t.size();
+            t.add(doc, e.getValue());
+            pendingBytes += t.size() - before;
+        }
+        if (pendingBytes >= FLUSH_THRESHOLD_BYTES) flush();
+    }
+
+    // Đánh dấu xóa mọi doc của file; gọi khi đang giữ lock
+    private void removeKey(String key) {
+        manifestDirty |= manifest.unindexed.remove(key);
+        FileState old = files.remove(key);
+        if (old == null) return;
+        for (long d : old.docs) {
+            int number = (int) (d >>> 32);
+            int doc = (int) d;
+            if (number == manifest.nextSegment) {
+                pendingDeletes.set(doc); // doc còn nằm trong bộ nhớ, chưa flush
+            } else {
+                deletes.get(number).set(doc);
+                dirtyDeletes.add(number);
+            }
+        }
+    }
+
+    private void commit(long generation) throws IOException {
+        manifest.generation = generation;
+        manifest.fileCount = files.size();
+        manifest.write(dir);
+        manifestDirty = false;
+        deleteUnreferenced();
+    }
+
+    // Xóa segment / file .del không còn trong manifest (bản cũ sau merge, file tạm của lần ghi bị gián đoạn)
+    private void deleteUnreferenced() throws IOException {
+        Set<String> live = new HashSet<>();
+        live.add(IndexManifest.FILE_NAME);
+        for (Map.Entry<Integer, Long> e : manifest.segments.entrySet()) {
+            live.add(Segment.pathOf(dir, e.getKey()).getFileName().toString());
+            if (e.getValue() != 0) {
+                live.add(IndexManifest.deletesPath(dir, e.getKey(), e.getValue()).getFileName().toString());
+            }
+        }
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "seg_*")) {
+            Iterator<Path> it = ds.iterator();
+            while (it.hasNext()) {
+                Path p = it.next();
+                if (live.contains(p.getFileName().toString())) continue;
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    // file còn bị reader khác giữ (Windows) -> để lần mở sau dọn
+                }
+            }
+        }
+    }
+
+    private static long docKey(int segment, int doc) {
+        return (long) segment << 32 | doc;
+    }
+
+    private static String keyOf(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+}
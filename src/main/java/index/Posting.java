@@ -0,0 +1,27 @@
+package index;
+
+/**
+ * Một phần tử của postings list: đường dẫn file chứa từ khóa và offset byte đầu các dòng mà từ khóa xuất hiện
+ * (tăng dần; dùng để seek thẳng tới dòng đó). Một offset có thể lặp lại nếu từ khóa xuất hiện nhiều lần trên cùng dòng.
+ */
+public class Posting {
+    private final String filePath;
+    private final long[] lineOffsets;
+
+    public Posting(String filePath, long[] lineOffsets) {
+        this.filePath = filePath;
+        this.lineOffsets = lineOffsets;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public long[] getLineOffsets() {
+        return lineOffsets;
+    }
+
+    public int getCount() {
+        return lineOffsets.length;
+    }
+}
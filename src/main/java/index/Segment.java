@@ -0,0 +1,435 @@
+package index;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Một segment bất biến của index, lưu trong một file seg_N.idx:
+ * <pre>
+ * [postings] [bảng file] [từ điển theo block] [sparse index] [trailer]
+ * </pre>
+ * Postings của một term gồm hai phần liền nhau:
+ * - phần doc: với mỗi file -> varint(delta docId), varint(số lần xuất hiện), varint(số byte offset của file đó)
+ * - phần offset: với mỗi file -> varint(delta offset)... (offset tính lại từ 0 cho mỗi file)
+ * count() chỉ đọc phần doc; lookup mới đọc phần offset. docId là số thứ tự của file trong bảng file của segment;
+ * offset là vị trí byte đầu dòng chứa token.
+ * Bảng file: mỗi file -> varint(size), varint(lastModified), chuỗi path.
+ * Từ điển: term sắp xếp tăng dần, chia block BLOCK_SIZE term. Mỗi block -> varint(offset postings của term đầu),
+ * varint(số term), rồi từng term -> varint(số byte trùng với term trước), chuỗi phần còn lại,
+ * varint(docFreq), varint(totalFreq), varint(độ dài phần doc), varint(độ dài postings).
+ * Sparse index: varint(số block), mỗi block -> chuỗi term đầu, varint(offset block tính từ đầu từ điển).
+ * Trailer: long offset bảng file, long offset từ điển, long offset sparse index, int số file, int số term, int MAGIC.
+ * Khi mở chỉ đọc trailer + sparse index; tra term bằng tìm kiếm nhị phân rồi đọc đúng một block.
+ * File được ghi ra file tạm rồi rename; segment chỉ có hiệu lực khi được liệt kê trong IndexManifest.
+ */
+final class Segment implements Closeable {
+    private static final int MAGIC = 0x4C494433; // "LID3"
+    private static final int TRAILER_SIZE = Long.BYTES * 3 + Integer.BYTES * 3;
+    private static final int BLOCK_SIZE = 64;
+    private static final String PREFIX = "seg_";
+    private static final String SUFFIX = ".idx";
+
+    final int number;
+    final int fileCount;
+    final int termCount;
+    private final FileChannel channel;
+    private final long fileTableOffset;
+    private final long dictOffset;
+    private final long sparseOffset;
+    private final String[] blockFirstTerms;
+    private final long[] blockOffsets; // tính từ dictOffset, thêm phần tử cuối = độ dài từ điển
+    private List<FileEntry> files;     // nạp khi cần (chỉ lookup và merge dùng tới)
+
+    /** Thông tin một file (hoặc một đoạn của file lớn) đã được index. */
+    static final class FileEntry {
+        final String path;
+        final long size;
+        final long lastModified;
+
+        FileEntry(String path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /** Vị trí postings của một term trong segment. */
+    static final class TermEntry {
+        final String term;
+        final int docFreq;
+        final long totalFreq;
+        final long offset;
+        final int docsLength; // độ dài phần doc ở đầu postings
+        final int length;
+
+        TermEntry(String term, int docFreq, long totalFreq, long offset, int docsLength, int length) {
+            this.term = term;
+            this.docFreq = docFreq;
+            this.totalFreq = totalFreq;
+            this.offset = offset;
+            this.docsLength = docsLength;
+            this.length = length;
+        }
+    }
+
+    /** Postings của một term đang được gom trong bộ nhớ (đã delta + varint), phần doc và phần offset tách riêng. */
+    static final class TermBuffer {
+        final ByteArrayOutputStream docs = new ByteArrayOutputStream(16);
+        final ByteArrayOutputStream offsets = new ByteArrayOutputStream(16);
+        int docFreq;
+        long totalFreq;
+        int lastDocId;
+
+        // Thêm một file vào postings: docId phải tăng dần; lineOffsets = {count, offset1, offset2, ...} không giảm
+        void add(int docId, long[] lineOffsets) {
+            int count = (int) lineOffsets[0];
+            try {
+                int before = offsets.size();
+                long prev = 0;
+                for (int i = 1; i <= count; i++) {
+                    VarInt.write(offsets, lineOffsets[i] - prev);
+                    prev = lineOffsets[i];
+                }
+                VarInt.write(docs, docFreq == 0 ? docId : docId - lastDocId);
+                VarInt.write(docs, count);
+                VarInt.write(docs, offsets.size() - before);
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // ByteArrayOutputStream không ném IOException
+            }
+            docFreq++;
+            totalFreq += count;
+            lastDocId = docId;
+        }
+
+        int size() {
+            return docs.size() + offsets.size();
+        }
+    }
+
+    /**
+     * Đọc tuần tự postings của một term: docId + số lần xuất hiện.
+     * Offset chỉ được giải mã khi gọi offsets() (cần mở bằng postings(entry, true)); nếu không thì được nhảy qua.
+     */
+    static final class PostingsReader {
+        private final ByteBuffer docs;
+        private final ByteBuffer offsets; // null nếu chỉ đọc phần doc
+        private int remaining;
+        private int offsetsEnd;
+        int doc;
+        int freq;
+
+        PostingsReader(ByteBuffer docs, ByteBuffer offsets, int docFreq) {
+            this.docs = docs;
+            this.offsets = offsets;
+            this.remaining = docFreq;
+            this.offsetsEnd = offsets == null ? 0 : offsets.position();
+        }
+
+        // Sang doc kế tiếp, bỏ qua phần offset của doc hiện tại nếu chưa đọc
+        boolean next() {
+            if (remaining == 0) return false;
+            remaining--;
+            doc += (int) VarInt.read(docs);
+            freq = (int) VarInt.read(docs);
+            int length = (int) VarInt.read(docs);
+            if (offsets != null) {
+                offsets.position(offsetsEnd);
+                offsetsEnd += length;
+            }
+            return true;
+        }
+
+        // Offset đầu dòng của doc hiện tại (tăng dần)
+        long[] offsets() {
+            long[] out = new long[freq];
+            long offset = 0;
+            for (int i = 0; i < freq; i++) {
+                offset += VarInt.read(offsets);
+                out[i] = offset;
+            }
+            return out;
+        }
+    }
+
+    private Segment(int number, FileChannel channel, ByteBuffer trailer, ByteBuffer sparse) {
+        this.number = number;
+        this.channel = channel;
+        this.fileTableOffset = trailer.getLong();
+        this.dictOffset = trailer.getLong();
+        this.sparseOffset = trailer.getLong();
+        this.fileCount = trailer.getInt();
+        this.termCount = trailer.getInt();
+        int blocks = (int) VarInt.read(sparse);
+        this.blockFirstTerms = new String[blocks];
+        this.blockOffsets = new long[blocks + 1];
+        for (int i = 0; i < blocks; i++) {
+            blockFirstTerms[i] = readString(sparse);
+            blockOffsets[i] = VarInt.read(sparse);
+        }
+        blockOffsets[blocks] = sparseOffset - dictOffset;
+    }
+
+    // Mở segment: chỉ đọc trailer và sparse index
+    static Segment open(Path dir, int number) throws IOException {
+        Path file = pathOf(dir, number);
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = ch.size();
+            if (size < TRAILER_SIZE) throw new IOException("Segment bị hỏng: " + file);
+            ByteBuffer trailer = readFully(ch, size - TRAILER_SIZE, TRAILER_SIZE);
+            if (trailer.getInt(TRAILER_SIZE - Integer.BYTES) != MAGIC) throw new IOException("Segment bị hỏng: " + file);
+            long sparseOffset = trailer.getLong(Long.BYTES * 2);
+            ByteBuffer sparse = readFully(ch, sparseOffset, (int) (size - TRAILER_SIZE - sparseOffset));
+            return new Segment(number, ch, trailer, sparse);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    // Tìm term: tìm kiếm nhị phân trên sparse index rồi quét một block
+    TermEntry find(String term) throws IOException {
+        int i = Arrays.binarySearch(blockFirstTerms, term);
+        int block = i >= 0 ? i : -i - 2;
+        if (block < 0) return null;
+        ByteBuffer buf = readFully(channel, dictOffset + blockOffsets[block],
+                (int) (blockOffsets[block + 1] - blockOffsets[block]));
+        BlockReader r = new BlockReader(buf);
+        while (r.next()) {
+            int cmp = r.entry.term.compareTo(term);
+            if (cmp == 0) return r.entry;
+            if (cmp > 0) return null;
+        }
+        return null;
+    }
+
+    ByteBuffer readPostings(TermEntry entry) throws IOException {
+        return readFully(channel, entry.offset, entry.length);
+    }
+
+    // withOffsets = false: chỉ đọc phần doc từ đĩa (đủ cho count)
+    PostingsReader postings(TermEntry entry, boolean withOffsets) throws IOException {
+        if (!withOffsets) {
+            return new PostingsReader(readFully(channel, entry.offset, entry.docsLength), null, entry.docFreq);
+        }
+        ByteBuffer all = readPostings(entry);
+        ByteBuffer offsets = all.duplicate().position(entry.docsLength);
+        return new PostingsReader(all.limit(entry.docsLength), offsets, entry.docFreq);
+    }
+
+    // Bảng file, nạp lần đầu khi cần
+    synchronized List<FileEntry> files() throws IOException {
+        if (files == null) {
+            ByteBuffer buf = readFully(channel, fileTableOffset, (int) (dictOffset - fileTableOffset));
+            List<FileEntry> out = new ArrayList<>(fileCount);
+            for (int i = 0; i < fileCount; i++) {
+                long size = VarInt.read(buf);
+                long lastModified = VarInt.read(buf);
+                out.add(new FileEntry(readString(buf), size, lastModified));
+            }
+            files = out;
+        }
+        return files;
+    }
+
+    // Duyệt toàn bộ từ điển theo thứ tự (dùng khi merge)
+    TermIterator terms() throws IOException {
+        return new TermIterator(readFully(channel, dictOffset, (int) (sparseOffset - dictOffset)));
+    }
+
+    /** Duyệt tuần tự các term của toàn bộ từ điển. */
+    static final class TermIterator {
+        private final ByteBuffer buf;
+        private BlockReader block;
+        TermEntry entry;
+
+        private TermIterator(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        boolean next() {
+            while (block == null || !block.next()) {
+                if (!buf.hasRemaining()) return false;
+                block = new BlockReader(buf);
+            }
+            entry = block.entry;
+            return true;
+        }
+    }
+
+    // Đọc lần lượt các term trong một block (buf đặt ở đầu block; sau khi đọc hết, buf ở đầu block kế tiếp)
+    private static final class BlockReader {
+        private final ByteBuffer buf;
+        private final int count;
+        private int read;
+        private long offset;
+        private byte[] prev = new byte[0];
+        TermEntry entry;
+
+        BlockReader(ByteBuffer buf) {
+            this.buf = buf;
+            this.offset = VarInt.read(buf);
+            this.count = (int) VarInt.read(buf);
+        }
+
+        boolean next() {
+            if (read == count) return false;
+            read++;
+            int shared = (int) VarInt.read(buf);
+            int suffix = (int) VarInt.read(buf);
+            byte[] term = Arrays.copyOf(prev, shared + suffix);
+            buf.get(term, shared, suffix);
+            prev = term;
+            int docFreq = (int) VarInt.read(buf);
+            long totalFreq = VarInt.read(buf);
+            int docsLength = (int) VarInt.read(buf);
+            int length = (int) VarInt.read(buf);
+            entry = new TermEntry(new String(term, StandardCharsets.UTF_8), docFreq, totalFreq, offset, docsLength, length);
+            offset += length;
+            return true;
+        }
+    }
+
+    /**
+     * Ghi segment mới theo dạng stream: postings được ghi thẳng ra file, term phải được thêm theo thứ tự tăng dần.
+     */
+    static final class Writer implements Closeable {
+        private final Path file;
+        private final Path tmp;
+        private final OutputStream out;
+        private final ByteArrayOutputStream dict = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream sparse = new ByteArrayOutputStream();
+        private long postingsBytes;
+        private int termCount;
+        private int blockTerms;
+        private int blockCount;
+        private long blockPostingsOffset;
+        private byte[] prev = new byte[0];
+        private boolean finished;
+
+        Writer(Path dir, int number) throws IOException {
+            this.file = pathOf(dir, number);
+            this.tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            this.out = new BufferedOutputStream(Files.newOutputStream(tmp));
+        }
+
+        void addTerm(String term, TermBuffer postings) throws IOException {
+            int docFreq = postings.docFreq;
+            long totalFreq = postings.totalFreq;
+            int length = postings.size();
+            byte[] b = term.getBytes(StandardCharsets.UTF_8);
+            if (blockTerms == 0) {
+                writeString(sparse, term);
+                VarInt.write(sparse, dict.size());
+                blockPostingsOffset = postingsBytes;
+                prev = new byte[0];
+            }
+            int shared = 0;
+            int max = Math.min(prev.length, b.length);
+            while (shared < max && prev[shared] == b[shared]) shared++;
+            VarInt.write(block, shared);
+            VarInt.write(block, b.length - shared);
+            block.write(b, shared, b.length - shared);
+            VarInt.write(block, docFreq);
+            VarInt.write(block, totalFreq);
+            VarInt.write(block, postings.docs.size());
+            VarInt.write(block, length);
+            prev = b;
+
+            postings.docs.writeTo(out);
+            postings.offsets.writeTo(out);
+            postingsBytes += length;
+            termCount++;
+            if (++blockTerms == BLOCK_SIZE) finishBlock();
+        }
+
+        private void finishBlock() throws IOException {
+            if (blockTerms == 0) return;
+            VarInt.write(dict, blockPostingsOffset);
+            VarInt.write(dict, blockTerms);
+            block.writeTo(dict);
+            block.reset();
+            blockTerms = 0;
+            blockCount++;
+        }
+
+        // Ghi bảng file + từ điển + trailer rồi đưa file vào đúng tên
+        void finish(List<FileEntry> files) throws IOException {
+            finishBlock();
+            ByteArrayOutputStream table = new ByteArrayOutputStream();
+            for (FileEntry f : files) {
+                VarInt.write(table, f.size);
+                VarInt.write(table, f.lastModified);
+                writeString(table, f.path);
+            }
+            long fileTableOffset = postingsBytes;
+            long dictOffset = fileTableOffset + table.size();
+            long sparseOffset = dictOffset + dict.size();
+            table.writeTo(out);
+            dict.writeTo(out);
+            VarInt.write(out, blockCount);
+            sparse.writeTo(out);
+
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            trailer.putLong(fileTableOffset).putLong(dictOffset).putLong(sparseOffset)
+                    .putInt(files.size()).putInt(termCount).putInt(MAGIC);
+            out.write(trailer.array());
+            out.close();
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (finished) return;
+            out.close();
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    static Path pathOf(Path dir, int number) {
+        return dir.resolve(PREFIX + number + SUFFIX);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /* ===================== Helpers ===================== */
+
+    static ByteBuffer readFully(FileChannel ch, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) < 0) throw new IOException("Segment bị cắt cụt");
+        }
+        return buf.flip();
+    }
+
+    static void writeString(OutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        VarInt.write(out, b.length);
+        out.write(b);
+    }
+
+    static String readString(ByteBuffer buf) {
+        int len = (int) VarInt.read(buf);
+        String s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+        buf.position(buf.position() + len);
+        return s;
+    }
+}
@@ -0,0 +1,119 @@
+package index;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Gom token của một file (hoặc một đoạn file) trước khi đưa vào LogIndexWriter.
+ * Token là chuỗi chữ/số liên tiếp, chuyển về chữ thường; vị trí lưu là offset byte (UTF-8) của đầu dòng chứa token.
+ * Không thread-safe: mỗi task dùng một collector riêng.
+ */
+public final class TokenCollector {
+    static final int MAX_TOKEN_LENGTH = 64;
+
+    // token -> mảng {count, offset1, offset2, ...} (mảng có thể dư chỗ ở cuối)
+    private final Map<String, long[]> terms = new HashMap<>();
+
+    // Thêm cả nội dung; baseOffset là offset byte của ký tự đầu tiên trong file
+    public void addText(String content, long baseOffset) {
+        long offset = baseOffset;
+        long lineOffset = baseOffset;
+        int len = content.length();
+        int i = 0;
+        while (i < len) {
+            char ch = content.charAt(i);
+            if (ch == '\n') {
+                i++;
+                offset++;
+                lineOffset = offset;
+            } else if (Character.isLetterOrDigit(ch)) {
+                int start = i;
+                while (i < len && Character.isLetterOrDigit(content.charAt(i))) i++;
+                offset += utf8Length(content, start, i);
+                add(content, start, i, lineOffset);
+            } else {
+                offset += utf8Length(content, i, i + 1);
+                i++;
+            }
+        }
+    }
+
+    // Thêm một dòng (không chứa '\n') bắt đầu tại lineOffset
+    public void addLine(CharSequence line, long lineOffset) {
+        int len = line.length();
+        int i = 0;
+        while (i < len) {
+            if (Character.isLetterOrDigit(line.charAt(i))) {
+                int start = i;
+                while (i < len && Character.isLetterOrDigit(line.charAt(i))) i++;
+                add(line, start, i, lineOffset);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Tách từ khóa truy vấn đúng như khi index (chữ/số liên tiếp, chữ thường), ví dụ "ERROR:" -> "error".
+     * Từ khóa phải ra đúng một token: không có chữ/số, nhiều token ("user-42") hoặc token dài hơn
+     * MAX_TOKEN_LENGTH (không được index) -> IllegalArgumentException.
+     */
+    static String queryToken(String query) {
+        String token = null;
+        int len = query.length();
+        int i = 0;
+        while (i < len) {
+            if (!Character.isLetterOrDigit(query.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < len && Character.isLetterOrDigit(query.charAt(i))) i++;
+            if (token != null) {
+                throw new IllegalArgumentException("Từ khóa '" + query + "' gồm nhiều token, index chỉ tra được một token (chữ/số liên tiếp)");
+            }
+            if (i - start > MAX_TOKEN_LENGTH) {
+                throw new IllegalArgumentException("Từ khóa dài hơn " + MAX_TOKEN_LENGTH + " ký tự không được index");
+            }
+            token = query.substring(start, i).toLowerCase(Locale.ROOT);
+        }
+        if (token == null) throw new IllegalArgumentException("Từ khóa '" + query + "' không chứa chữ hoặc số");
+        return token;
+    }
+
+    public boolean isEmpty() {
+        return terms.isEmpty();
+    }
+
+    Map<String, long[]> terms() {
+        return terms;
+    }
+
+    private void add(CharSequence text, int start, int end, long lineOffset) {
+        if (end - start > MAX_TOKEN_LENGTH) return;
+        String token = text.subSequence(start, end).toString().toLowerCase(Locale.ROOT);
+        long[] offsets = terms.get(token);
+        if (offsets == null) {
+            offsets = new long[4];
+            terms.put(token, offsets);
+        } else if (offsets[0] + 1 == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            terms.put(token, offsets);
+        }
+        offsets[(int) ++offsets[0]] = lineOffset;
+    }
+
+    // Số byte UTF-8 của đoạn [start, end); cặp surrogate được tính 2 + 2 = 4 byte
+    private static int utf8Length(CharSequence s, int start, int end) {
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) n += 1;
+            else if (c < 0x800 || Character.isSurrogate(c)) n += 2;
+            else n += 3;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,34 @@
+package index;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Mã hóa / giải mã số nguyên không âm theo kiểu varint (7 bit dữ liệu mỗi byte,
+ * bit cao = còn byte tiếp theo). Dùng cho postings list đã được delta-encode.
+ */
+final class VarInt {
+    private VarInt() {
+    }
+
+    static void write(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long read(ByteBuffer buf) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buf.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+            shift += 7;
+            if (shift > 63) throw new IllegalStateException("Varint quá dài, index bị hỏng");
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package model;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Kho kết quả phân tích dạng cột (struct-of-arrays) thay cho List&lt;LogResult&gt;:
+ * số từ, số keyword, thời điểm xử lý (micro giây) nằm trong mảng nguyên thủy,
+ * tên file được lưu một lần dưới dạng UTF-8 trong một mảng byte chung (dictionary) và tham chiếu bằng id.
+ * Mỗi bản ghi tốn khoảng 20 byte + tên file, không tạo object nào cho mỗi file.
+ * add() thread-safe; chỉ duyệt bằng cursor() sau khi đã thêm xong.
+ */
+public class LogResultBuffer {
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Cột dữ liệu
+    private int size;
+    private int[] nameIds = new int[INITIAL_CAPACITY];
+    private int[] wordCounts = new int[INITIAL_CAPACITY];
+    private int[] keywordCounts = new int[INITIAL_CAPACITY];
+    private long[] processedAtMicros = new long[INITIAL_CAPACITY];
+
+    // Dictionary tên file: bytes của tên thứ i nằm trong [nameOffsets[i], nameOffsets[i + 1])
+    private byte[] nameBytes = new byte[INITIAL_CAPACITY * 16];
+    private int[] nameOffsets = new int[INITIAL_CAPACITY + 1];
+    private int nameCount;
+    private int[] nameTable = new int[INITIAL_CAPACITY * 2]; // bảng băm địa chỉ mở: 0 = trống, còn lại = id + 1
+
+    public static LogResultBuffer of(List<LogResult> results) {
+        LogResultBuffer buf = new LogResultBuffer();
+        for (LogResult r : results) {
+            buf.add(r.getFileName(), r.getWordCount(), r.getKeywordCount(), r.getProcessedAt());
+        }
+        return buf;
+    }
+
+    public synchronized void add(String fileName, int wordCount, int keywordCount, LocalDateTime processedAt) {
+        if (size == wordCounts.length) {
+            int cap = size + (size >> 1);
+            nameIds = Arrays.copyOf(nameIds, cap);
+            wordCounts = Arrays.copyOf(wordCounts, cap);
+            keywordCounts = Arrays.copyOf(keywordCounts, cap);
+            processedAtMicros = Arrays.copyOf(processedAtMicros, cap);
+        }
+        nameIds[size] = intern(fileName);
+        wordCounts[size] = wordCount;
+        keywordCounts[size] = keywordCount;
+        processedAtMicros[size] = toMicros(processedAt);
+        size++;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Duyệt tuần tự các bản ghi mà không tạo LogResult:
+     * <pre>
+     * Cursor c = buffer.cursor();
+     * while (c.next()) { c.getFileName(); c.getWordCount(); ... }
+     * </pre>
+     */
+    public class Cursor {
+        private int row = -1;
+
+        public boolean next() {
+            return ++row < size;
+        }
+
+        public String getFileName() {
+            int id = nameIds[row];
+            return new String(nameBytes, nameOffsets[id], nameOffsets[id + 1] - nameOffsets[id], StandardCharsets.UTF_8);
+        }
+
+        public int getWordCount() {
+            return wordCounts[row];
+        }
+
+        public int getKeywordCount() {
+            return keywordCounts[row];
+        }
+
+        public LocalDateTime getProcessedAt() {
+            long micros = processedAtMicros[row];
+            return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                    (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+        }
+    }
+
+    /* ===================== Dictionary tên file ===================== */
+
+    // Trả về id của tên file, thêm mới nếu chưa có
+    private int intern(String name) {
+        byte[] b = name.getBytes(StandardCharsets.UTF_8);
+        int mask = nameTable.length - 1;
+        int slot = hash(b, 0, b.length) & mask;
+        while (nameTable[slot] != 0) {
+            int id = nameTable[slot] - 1;
+            if (Arrays.equals(nameBytes, nameOffsets[id], nameOffsets[id + 1], b, 0, b.length)) return id;
+            slot = (slot + 1) & mask;
+        }
+
+        int id = nameCount++;
+        int start = nameOffsets[id];
+        if (start + b.length > nameBytes.length) {
+            nameBytes = Arrays.copyOf(nameBytes, Math.max(nameBytes.length * 2, start + b.length));
+        }
+        System.arraycopy(b, 0, nameBytes, start, b.length);
+        if (nameCount + 1 > nameOffsets.length) nameOffsets = Arrays.copyOf(nameOffsets, nameOffsets.length * 2);
+        nameOffsets[nameCount] = start + b.length;
+        nameTable[slot] = id + 1;
+        if (nameCount * 2 > nameTable.length) rehash();
+        return id;
+    }
+
+    // Gấp đôi bảng băm khi quá nửa số ô đã dùng
+    private void rehash() {
+        int[] table = new int[nameTable.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < nameCount; id++) {
+            int slot = hash(nameBytes, nameOffsets[id], nameOffsets[id + 1]) & mask;
+            while (table[slot] != 0) slot = (slot + 1) & mask;
+            table[slot] = id + 1;
+        }
+        nameTable = table;
+    }
+
+    private static int hash(byte[] b, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++) h = 31 * h + b[i];
+        return h ^ (h >>> 16);
+    }
+
+    // LocalDateTime không có múi giờ: lưu như UTC để đọc lại đúng giá trị ban đầu
+    private static long toMicros(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + t.getNano() / 1000;
+    }
+}
@@ -1,10 +1,19 @@
 package service;
 
+import cluster.Shard;
+import cluster.ShardCoordinator;
 import db.DatabaseManager;
+import index.LogIndexReader;
+import index.LogIndexWriter;
+import index.Posting;
 import model.LogResult;
+import model.LogResultBuffer;
+import thread.FileBatchTask;
+import thread.FileChunkTask;
 import thread.FileReaderTask;
 import util.LogFileUtil;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -12,66 +21,248 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
+import java.util.stream.Stream;
 
 public class LogAnalyzerService {
+    // Thư mục chứa inverted index được xây dựng kèm khi analyzeLogs
+    private static final String INDEX_DIR = "log_index";
+    // Kích thước tối đa một shard khi phân tích nhiều tiến trình
+    private static final long SHARD_SIZE = 64L * 1024 * 1024;
+    // Lập lịch analyzeLogs theo kích thước file
+    private static final long CHUNK_BYTES = 8L * 1024 * 1024;       // kích thước mỗi đoạn của file lớn
+    // Từ ngưỡng này file được đọc theo đoạn (stream), không readString + split cả file vào heap
+    private static final long LARGE_FILE_BYTES = CHUNK_BYTES;
+    private static final long SMALL_FILE_BYTES = 64L * 1024;        // file nhỏ hơn ngưỡng này được gom nhóm
+    private static final long BATCH_BYTES = 4L * 1024 * 1024;       // tổng dung lượng tối đa một nhóm
+    private static final int MAX_BATCH_FILES = 256;                 // số file tối đa một nhóm
+
     private final DatabaseManager db;
+    private final String indexDir;
+    // Reader dùng chung cho các truy vấn từ khóa; chỉ mở lại khi index trên đĩa đã đổi
+    private LogIndexReader indexReader;
 
     public LogAnalyzerService() {
-        this.db = new DatabaseManager();
+        this(new DatabaseManager(), INDEX_DIR);
+    }
+
+    // Cho phép thay DB và thư mục index (VD: DB giả lập + index tạm khi đo hiệu năng)
+    public LogAnalyzerService(DatabaseManager db, String indexDir) {
+        this.db = db;
+        this.indexDir = indexDir;
     }
 
     /* ============= Phân tích log trong thư mục bằng multithreading ============= */
     public void analyzeLogs(String folderPath) {
-        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-        List<Future<LogResult>> futures = new ArrayList<>();
+        analyzeLogs(folderPath, "D:\\InternBE\\log-analyzer_p2\\src\\main\\java\\log_result\\ana_result.txt");
+    }
+
+    public void analyzeLogs(String folderPath, String resultPath) {
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        List<Future<?>> futures = new ArrayList<>();
+        Map<Path, List<Future<long[]>>> chunkedFiles = new LinkedHashMap<>();
+        // Các task ghi kết quả thẳng vào buffer dạng cột thay vì trả về LogResult
+        LogResultBuffer results = new LogResultBuffer();
 
+        // Mở inverted index để cập nhật tăng dần; nếu lỗi vẫn phân tích bình thường, chỉ bỏ qua index
+        LogIndexWriter indexWriter = null;
         try {
-            // Lấy danh sách các file trong thư mục
-            Files.list(Paths.get(folderPath))
-                    .filter(Files::isRegularFile)
-                    .forEach(p -> futures.add(pool.submit(new thread.FileReaderTask(p))));
+            indexWriter = LogIndexWriter.open(Paths.get(indexDir));
+        } catch (IOException e) {
+            System.err.println("Không mở được index, bỏ qua cập nhật index: " + e.getMessage());
+        }
+        LogIndexWriter writer = indexWriter;
+
+        // Lấy danh sách các file trong thư mục kèm kích thước, file lớn xếp trước để không bị dồn về cuối
+        List<Path> files = new ArrayList<>();
+        Map<Path, Long> sizes = new HashMap<>();
+        boolean listed = false;
+        try (Stream<Path> s = Files.list(Paths.get(folderPath))) {
+            s.filter(Files::isRegularFile).forEach(p -> {
+                files.add(p);
+                sizes.put(p, sizeOf(p));
+            });
+            listed = true;
         } catch (IOException e) {
             System.err.println("Không đọc được thư mục: " + e.getMessage());
         }
+        // File đã index nhưng không còn trong thư mục -> đánh dấu xóa khỏi index
+        if (writer != null && listed) {
+            int removed = writer.removeMissing(Paths.get(folderPath), new HashSet<>(files));
+            if (removed > 0) System.out.println("🗑️ Xóa " + removed + " file không còn tồn tại khỏi index.");
+        }
+        files.sort((a, b) -> Long.compare(sizes.get(b), sizes.get(a)));
+
+        // Lập lịch theo kích thước: file lớn chia thành nhiều đoạn song song, file nhỏ gom thành nhóm, còn lại mỗi file một task
+        List<Path> batch = new ArrayList<>();
+        long batchBytes = 0;
+        for (Path p : files) {
+            long size = sizes.get(p);
+            if (size >= LARGE_FILE_BYTES) {
+                // File lớn đã đổi được index lại theo từng đoạn; chưa đổi thì chỉ đếm
+                LogIndexWriter chunkWriter = beginChunkedIndex(writer, p);
+                List<Future<long[]>> chunks = new ArrayList<>();
+                for (long start = 0; start < size; start += CHUNK_BYTES) {
+                    chunks.add(pool.submit(new FileChunkTask(p, start, Math.min(start + CHUNK_BYTES, size), chunkWriter)));
+                }
+                chunkedFiles.put(p, chunks);
+            } else if (size >= 0 && size <= SMALL_FILE_BYTES) {
+                batch.add(p);
+                batchBytes += size;
+                if (batch.size() >= MAX_BATCH_FILES || batchBytes >= BATCH_BYTES) {
+                    futures.add(pool.submit(new FileBatchTask(batch, writer, results)));
+                    batch = new ArrayList<>();
+                    batchBytes = 0;
+                }
+            } else {
+                futures.add(pool.submit(new FileReaderTask(p, writer, results)));
+            }
+        }
+        if (!batch.isEmpty()) futures.add(pool.submit(new FileBatchTask(batch, writer, results)));
 
-        // Chờ tất cả các tác vụ hoàn thành và thu thập kết quả
-        List<LogResult> results = new ArrayList<>();
-        for (Future<LogResult> f : futures) {
+        // Chờ tất cả các tác vụ hoàn thành (kết quả đã nằm trong buffer)
+        for (Future<?> f : futures) {
             try {
-                LogResult r = f.get();
-                if (r != null) results.add(r);
+                f.get();
             } catch (InterruptedException | ExecutionException e) {
                 e.printStackTrace();
             }
         }
+
+        // Cộng kết quả các đoạn của từng file lớn thành một kết quả cho file đó
+        for (Map.Entry<Path, List<Future<long[]>>> e : chunkedFiles.entrySet()) {
+            long wc = 0, kc = 0;
+            try {
+                for (Future<long[]> f : e.getValue()) {
+                    long[] r = f.get();
+                    wc += r[0];
+                    kc += r[1];
+                }
+            } catch (InterruptedException | ExecutionException ex) {
+                System.err.println("Lỗi đọc file: " + e.getKey() + " -> " + ex.getMessage());
+                if (writer != null) writer.markUnindexed(e.getKey()); // không để index giữ một phần của file
+                continue;
+            }
+            // Cột DB là INT nên giới hạn ở Integer.MAX_VALUE
+            results.add(e.getKey().getFileName().toString(),
+                    (int) Math.min(wc, Integer.MAX_VALUE), (int) Math.min(kc, Integer.MAX_VALUE), LocalDateTime.now());
+        }
         pool.shutdown();
 
+        // Ghi phần index còn lại trong bộ nhớ ra segment mới
+        if (writer != null) {
+            try {
+                writer.close();
+                System.out.println("🔎 Đã cập nhật index (" + indexDir + ").");
+            } catch (IOException e) {
+                System.err.println("Lỗi ghi index: " + e.getMessage());
+            }
+        }
+
         // Lưu batch với Transaction vào bảng log_analysis
         db.saveBatch(results, "log_analysis");
         System.out.println("✅ Đã phân tích " + results.size() + " file và lưu DB (log_analysis).");
 
         // Ghi toàn bộ kết quả vào file ana_result.txt
-        writeResultsToFile(results, "D:\\InternBE\\log-analyzer_p2\\src\\main\\java\\log_result\\ana_result.txt");
+        writeResultsToFile(results, resultPath);
     }
 
-    // Ghi kết quả phân tích vào file ana_result.txt
-    private void writeResultsToFile(List<LogResult> results, String filePath) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(String.format("%-20s %-12s %-15s %-25s%n", "Filename", "Word Count", "Keyword Count", "Processed At"));
-        for (LogResult r : results) {
-            sb.append(String.format("%-20s %-12d %-15d %-25s%n",
-                    r.getFileName(), r.getWordCount(), r.getKeywordCount(), r.getProcessedAt()));
+    // Gọi beginFile nếu file lớn cần index lại; trả về writer cho các FileChunkTask (null = không index)
+    private static LogIndexWriter beginChunkedIndex(LogIndexWriter writer, Path file) {
+        if (writer == null) return null;
+        try {
+            if (!writer.needsIndexing(file)) return null;
+            writer.beginFile(file);
+            return writer;
+        } catch (IOException e) {
+            System.err.println("Lỗi ghi index cho file: " + file + " -> " + e.getMessage());
+            writer.markUnindexed(file);
+            return null;
         }
+    }
+
+    // Kích thước file, -1 nếu không đọc được (khi đó để FileReaderTask báo lỗi như bình thường)
+    private static long sizeOf(Path p) {
         try {
-            Files.write(Path.of(filePath), sb.toString().getBytes(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            return Files.size(p);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    // Ghi kết quả phân tích vào file ana_result.txt
+    private void writeResultsToFile(List<LogResult> results, String filePath) {
+        writeResultsToFile(LogResultBuffer.of(results), filePath);
+    }
+
+    // Ghi từng dòng qua cursor, không dựng toàn bộ nội dung trong bộ nhớ
+    private void writeResultsToFile(LogResultBuffer results, String filePath) {
+        try (BufferedWriter out = Files.newBufferedWriter(Path.of(filePath), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(String.format("%-20s %-12s %-15s %-25s%n", "Filename", "Word Count", "Keyword Count", "Processed At"));
+            LogResultBuffer.Cursor r = results.cursor();
+            while (r.next()) {
+                out.write(String.format("%-20s %-12d %-15d %-25s%n",
+                        r.getFileName(), r.getWordCount(), r.getKeywordCount(), r.getProcessedAt()));
+            }
             System.out.println("📄 Đã ghi kết quả vào file txt");
         } catch (IOException e) {
             System.err.println("Lỗi ghi file txt: " + e.getMessage());
         }
     }
 
+    /* ============= Truy vấn từ khóa bằng inverted index (không đọc lại file log) ============= */
+    public void countKeyword(String term) {
+        long start = System.nanoTime();
+        try {
+            LogIndexReader reader = indexReader();
+            long count = reader.count(term);
+            System.out.printf("Từ khóa '%s' xuất hiện %d lần trong %d file (%.2f ms).%n",
+                    term, count, reader.getFileCount(), (System.nanoTime() - start) / 1_000_000.0);
+            List<String> unindexed = reader.getUnindexedFiles();
+            if (!unindexed.isEmpty()) {
+                System.out.println("⚠️ " + unindexed.size() + " file chưa được index, không nằm trong kết quả:");
+                unindexed.forEach(f -> System.out.println("   " + f));
+            }
+        } catch (IOException e) {
+            System.err.println("Lỗi đọc index: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println("⚠️ " + e.getMessage());
+        }
+    }
+
+    public void lookupKeyword(String term) {
+        long start = System.nanoTime();
+        try {
+            List<Posting> postings = indexReader().lookup(term);
+            System.out.printf("%-50s %-8s %s%n", "File", "Count", "Line offsets");
+            for (Posting p : postings) {
+                System.out.printf("%-50s %-8d %s%n", p.getFilePath(), p.getCount(), java.util.Arrays.toString(p.getLineOffsets()));
+            }
+            System.out.printf("Tìm thấy '%s' trong %d file (%.2f ms).%n",
+                    term, postings.size(), (System.nanoTime() - start) / 1_000_000.0);
+        } catch (IOException e) {
+            System.err.println("Lỗi đọc index: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println("⚠️ " + e.getMessage());
+        }
+    }
+
+    // Mở reader lần đầu, hoặc mở lại khi analyzeLogs (hay tiến trình khác) đã commit index mới
+    private synchronized LogIndexReader indexReader() throws IOException {
+        if (indexReader != null && !indexReader.isCurrent()) {
+            indexReader.close();
+            indexReader = null;
+        }
+        if (indexReader == null) indexReader = LogIndexReader.open(Paths.get(indexDir));
+        return indexReader;
+    }
+
     /* ============= Concurrency: ghi 100 file + DB song song ============= */
     public void write100LogsConcurrently(int N) {
 
@@ -143,7 +334,12 @@ public class LogAnalyzerService {
     // Phân tích log_all.csv bằng FixedThreadPool, ghi tổng hợp ra file
     public void analyzeLargeLogWithThreadPool(String path) {
         // Đặt đường dẫn file log cần phân tích
-        path = "D:\\InternBE\\log-analyzer_p2\\src\\main\\resources\\logs\\log_all.csv";
+        analyzeLargeLogWithThreadPool("D:\\InternBE\\log-analyzer_p2\\src\\main\\resources\\logs\\log_all.csv",
+                "D:\\InternBE\\log-analyzer_p2\\src\\main\\java\\log_result\\log_result_fixedThreadPool.txt");
+    }
+
+    // Phân tích một file log lớn bất kỳ bằng FixedThreadPool, ghi tổng hợp ra resultPath
+    public void analyzeLargeLogWithThreadPool(String path, String resultPath) {
         List<String> lines;
         try {
             // Đọc toàn bộ nội dung file vào danh sách dòng
@@ -220,15 +416,20 @@ public class LogAnalyzerService {
 
         // Tạo kết quả tổng hợp và ghi ra file ana_result.txt
         List<LogResult> result = List.of(
-            new LogResult("log_all.csv", totalWordCount, totalKeywordCount, java.time.LocalDateTime.now())
+            new LogResult(Paths.get(path).getFileName().toString(), totalWordCount, totalKeywordCount, java.time.LocalDateTime.now())
         );
-        writeResultsToFile(result, "D:\\InternBE\\log-analyzer_p2\\src\\main\\java\\log_result\\log_result_fixedThreadPool.txt");
+        writeResultsToFile(result, resultPath);
     }
 
     // Phân tích log_all.csv bằng ForkJoinPool, ghi tổng hợp ra file
     public void analyzeLargeLogWithForkJoin(String path) {
         // Đặt đường dẫn file log cần phân tích
-        path = "D:\\InternBE\\log-analyzer_p2\\src\\main\\resources\\logs\\log_all.csv";
+        analyzeLargeLogWithForkJoin("D:\\InternBE\\log-analyzer_p2\\src\\main\\resources\\logs\\log_all.csv",
+                "D:\\InternBE\\log-analyzer_p2\\src\\main\\java\\log_result\\log_result_forkJoin.txt");
+    }
+
+    // Phân tích một file log lớn bất kỳ bằng ForkJoinPool, ghi tổng hợp ra resultPath
+    public void analyzeLargeLogWithForkJoin(String path, String resultPath) {
         List<String> lines;
         try {
             // Đọc toàn bộ nội dung file vào danh sách dòng
@@ -259,9 +460,41 @@ public class LogAnalyzerService {
 
         // Tạo kết quả tổng hợp và ghi ra file ana_result.txt
         List<LogResult> result = List.of(
-            new LogResult("log_all.csv", totalWordCount, totalKeywordCount, java.time.LocalDateTime.now())
+            new LogResult(Paths.get(path).getFileName().toString(), totalWordCount, totalKeywordCount, java.time.LocalDateTime.now())
         );
-        writeResultsToFile(result, "D:\\InternBE\\log-analyzer_p2\\src\\main\\java\\log_result\\log_result_forkJoin.txt");
+        writeResultsToFile(result, resultPath);
+    }
+
+    /* ============= Phân tích nhiều tiến trình: coordinator + worker qua socket ============= */
+    // Mặc định chạy local (127.0.0.1); chạy nhiều máy bằng -Dcoordinator.host=<ip> -Dcoordinator.port=<port>
+    // -Dcoordinator.token=<token> (bắt buộc khi bind địa chỉ không phải loopback, worker phải dùng cùng token)
+    public void analyzeDistributed(String inputPath, int localWorkers) {
+        String host = System.getProperty("coordinator.host", "127.0.0.1");
+        int port = Integer.getInteger("coordinator.port", 0);
+        String token = System.getProperty("coordinator.token");
+        ShardCoordinator coordinator = new ShardCoordinator(host, port, localWorkers, SHARD_SIZE, token);
+
+        Map<String, long[]> totals;
+        try {
+            List<Shard> shards = coordinator.split(inputPath);
+            totals = coordinator.run(shards);
+        } catch (IOException e) {
+            System.err.println("Lỗi phân tích phân tán: " + e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        // Gộp kết quả theo file; cột DB là INT nên giới hạn ở Integer.MAX_VALUE
+        List<LogResult> results = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        totals.forEach((path, t) -> results.add(new LogResult(Path.of(path).getFileName().toString(),
+                (int) Math.min(t[0], Integer.MAX_VALUE), (int) Math.min(t[1], Integer.MAX_VALUE), now)));
+
+        db.saveBatch(results, "log_analysis");
+        System.out.println("✅ Đã phân tích " + results.size() + " file bằng " + localWorkers + " worker và lưu DB (log_analysis).");
+        writeResultsToFile(results, "D:\\InternBE\\log-analyzer_p2\\src\\main\\java\\log_result\\log_result_distributed.txt");
     }
 
     // Task cho ForkJoinPool: phân tích một đoạn của danh sách dòng
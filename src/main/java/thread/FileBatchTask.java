@@ -0,0 +1,32 @@
+package thread;
+
+import index.LogIndexWriter;
+import model.LogResultBuffer;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Lớp này xử lý tuần tự một nhóm file nhỏ trong cùng một task để giảm chi phí tạo / lập lịch task cho mỗi file.
+ * Mỗi file vẫn được phân tích bằng FileReaderTask nên kết quả từng file không đổi.
+ */
+public class FileBatchTask implements Callable<Void> {
+    private final List<Path> files;
+    private final LogIndexWriter indexWriter;
+    private final LogResultBuffer results;
+
+    public FileBatchTask(List<Path> files, LogIndexWriter indexWriter, LogResultBuffer results) {
+        this.files = files;
+        this.indexWriter = indexWriter;
+        this.results = results;
+    }
+
+    @Override
+    public Void call() {
+        for (Path p : files) {
+            new FileReaderTask(p, indexWriter, results).call();
+        }
+        return null;
+    }
+}
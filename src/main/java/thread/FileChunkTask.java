@@ -0,0 +1,125 @@
+package thread;
+
+import index.LogIndexWriter;
+import index.TokenCollector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+
+/**
+ * Lớp này đếm số từ và số lần xuất hiện "error" trong một đoạn byte [start, end) của file,
+ * dùng để chia file rất lớn thành nhiều phần xử lý song song mà không đọc cả file vào bộ nhớ.
+ * Kết quả trả về dạng {số từ, số keyword}; cộng các đoạn lại cho ra đúng kết quả của FileReaderTask.
+ * Nếu có LogIndexWriter, token của đoạn (kèm offset byte đầu dòng trong file) được đưa vào index qua addChunk;
+ * người gọi phải gọi beginFile trước khi giao các đoạn của file.
+ */
+public class FileChunkTask implements Callable<long[]> {
+    private final Path filePath;
+    private final long start;
+    private final long end;
+    private final LogIndexWriter indexWriter;
+
+    public FileChunkTask(Path filePath, long start, long end) {
+        this(filePath, start, end, null);
+    }
+
+    public FileChunkTask(Path filePath, long start, long end, LogIndexWriter indexWriter) {
+        this.filePath = filePath;
+        this.start = start;
+        this.end = end;
+        this.indexWriter = indexWriter;
+    }
+
+    @Override
+    public long[] call() throws IOException {
+        TokenCollector tokens = indexWriter == null ? null : new TokenCollector();
+        long[] counts = countRange(filePath.toString(), start, end, false, tokens);
+        if (tokens != null) {
+            // Lỗi ghi index không làm hỏng kết quả đếm của đoạn
+            try {
+                indexWriter.addChunk(filePath, tokens);
+            } catch (IOException e) {
+                System.err.println("Lỗi ghi index cho file: " + filePath + " -> " + e.getMessage());
+                indexWriter.markUnindexed(filePath);
+            }
+        }
+        return counts;
+    }
+
+    // Chỉ đếm, không thu token (dùng cho ShardWorker)
+    public static long[] countRange(String path, long start, long end, boolean skipHeader) throws IOException {
+        return countRange(path, start, end, skipHeader, null);
+    }
+
+    /*
+     * Đếm các dòng bắt đầu trong [start, end): trả về {tổng số từ, tổng số "error"}.
+     * Nếu start > 0 thì bỏ phần dòng dở dang (đã thuộc đoạn trước).
+     * skipHeader: dòng đầu file chứa "timestamp" được coi là header CSV và bỏ qua.
+     * tokens (có thể null): nhận token của từng dòng kèm offset byte đầu dòng.
+     */
+    public static long[] countRange(String path, long start, long end, boolean skipHeader, TokenCollector tokens)
+            throws IOException {
+        long wc = 0, kc = 0;
+        try (FileChannel ch = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+            ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+            long pos = Math.max(0, start - 1);      // vị trí file của byte kế tiếp trong buf
+            long lineStart = start == 0 ? 0 : -1;   // -1: đang bỏ dòng dở dang của shard trước
+            boolean firstLine = skipHeader && start == 0;
+            buf.limit(0);
+
+            while (true) {
+                if (!buf.hasRemaining()) {
+                    if (lineStart >= end) break;
+                    buf.clear();
+                    int n = ch.read(buf, pos);
+                    buf.flip();
+                    if (n <= 0) break;
+                }
+                byte b = buf.get();
+                pos++;
+                if (b != '\n') {
+                    if (lineStart >= 0) line.write(b);
+                    continue;
+                }
+                if (lineStart >= 0) {
+                    String text = line.toString(StandardCharsets.UTF_8);
+                    if (tokens != null) tokens.addLine(text, lineStart);
+                    if (!(firstLine && text.toLowerCase().contains("timestamp"))) {
+                        wc += countWords(text);
+                        kc += countKeyword(text);
+                    }
+                    firstLine = false;
+                    line.reset();
+                }
+                lineStart = pos;
+                if (lineStart >= end) break;
+            }
+            // Dòng cuối file không có ký tự xuống dòng
+            if (lineStart >= 0 && lineStart < end && line.size() > 0) {
+                String text = line.toString(StandardCharsets.UTF_8);
+                if (tokens != null) tokens.addLine(text, lineStart);
+                if (!(firstLine && text.toLowerCase().contains("timestamp"))) {
+                    wc += countWords(text);
+                    kc += countKeyword(text);
+                }
+            }
+        }
+        return new long[]{wc, kc};
+    }
+
+    private static int countWords(String line) {
+        return line.trim().isEmpty() ? 0 : line.trim().split("\\s+").length; // Đếm số từ
+    }
+
+    private static int countKeyword(String line) {
+        return line.split("(?i)error", -1).length - 1; // Đếm số lần xuất hiện "error"
+    }
+}
@@ -1,6 +1,8 @@
 package thread;
 
+import index.LogIndexWriter;
 import model.LogResult;
+import model.LogResultBuffer;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -11,12 +13,22 @@ import java.util.concurrent.Callable;
 /**
  * Lớp này thực hiện việc đọc nội dung của một file log, đếm số từ và số lần xuất hiện của từ khóa "error".
  * Kết quả được trả về dưới dạng đối tượng LogResult.
+ * Nếu có LogIndexWriter, nội dung file đã đọc được đưa luôn vào inverted index (không đọc lại file).
+ * Nếu có LogResultBuffer, kết quả được ghi thẳng vào buffer và call() trả về null (không tạo LogResult).
  */
 public class FileReaderTask implements Callable<LogResult> {
     private final Path filePath;
+    private final LogIndexWriter indexWriter;
+    private final LogResultBuffer results;
 
     public FileReaderTask(Path filePath) {
+        this(filePath, null, null);
+    }
+
+    public FileReaderTask(Path filePath, LogIndexWriter indexWriter, LogResultBuffer results) {
         this.filePath = filePath;
+        this.indexWriter = indexWriter;
+        this.results = results;
     }
 
     @Override
@@ -25,10 +37,25 @@ public class FileReaderTask implements Callable<LogResult> {
             String content = Files.readString(filePath);
             int wordCount = content.trim().isEmpty() ? 0 : content.trim().split("\\s+").length;
             int keywordCount = content.split("(?i)error", -1).length - 1; // đếm "error" không phân biệt hoa thường
+            indexFile(content);
+            if (results != null) {
+                results.add(filePath.getFileName().toString(), wordCount, keywordCount, LocalDateTime.now());
+                return null;
+            }
             return new LogResult(filePath.getFileName().toString(), wordCount, keywordCount, LocalDateTime.now());
         } catch (IOException e) {
             System.err.println("Lỗi đọc file: " + filePath + " -> " + e.getMessage());
             return null;
         }
     }
+
+    // Lỗi ghi index không làm hỏng kết quả phân tích của file
+    private void indexFile(String content) {
+        if (indexWriter == null) return;
+        try {
+            if (indexWriter.needsIndexing(filePath)) indexWriter.addFile(filePath, content);
+        } catch (IOException e) {
+            System.err.println("Lỗi ghi index cho file: " + filePath + " -> " + e.getMessage());
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,239 @@
+package index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogIndexWriterTest {
+    @TempDir
+    Path tmp;
+
+    @Test
+    void countsAndLooksUpByteOffsetsOfLineStarts() throws IOException {
+        Path logs = Files.createDirectories(tmp.resolve("logs"));
+        String content = "2024-01-01 INFO khởi động\n2024-01-01 ERROR lỗi kết nối error\n\nerror cuối";
+        Path file = write(logs.resolve("a.txt"), content, 1);
+        index(logs);
+
+        try (LogIndexReader r = LogIndexReader.open(tmp.resolve("idx"))) {
+            assertEquals(1, r.getFileCount());
+            assertEquals(3, r.count("ERROR"));
+            assertEquals(1, r.count("lỗi"));
+            assertEquals(0, r.count("missing"));
+
+            List<Posting> postings = r.lookup("error");
+            assertEquals(1, postings.size());
+            assertEquals(file.toAbsolutePath().normalize().toString(), postings.get(0).getFilePath());
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            long second = indexOf(bytes, "2024-01-01 ERROR");
+            long last = indexOf(bytes, "error cuối");
+            assertArrayEquals(new long[]{second, second, last}, postings.get(0).getLineOffsets());
+        }
+    }
+
+    @Test
+    void queriesAreTokenizedLikeIndexedText() throws IOException {
+        Path logs = Files.createDirectories(tmp.resolve("logs"));
+        write(logs.resolve("a.txt"), "ERROR: timeout\nuser-42 login\n" + "x".repeat(65) + "\n", 1);
+        index(logs);
+
+        try (LogIndexReader r = LogIndexReader.open(tmp.resolve("idx"))) {
+            assertEquals(1, r.count("error:"));
+            assertEquals(1, r.count("  [Timeout] "));
+            assertEquals(1, r.lookup("ERROR:").size());
+            assertThrows(IllegalArgumentException.class, () -> r.count("user-42")); // hai token: user, 42
+            assertThrows(IllegalArgumentException.class, () -> r.lookup("user 42"));
+            assertThrows(IllegalArgumentException.class, () -> r.count("x".repeat(65))); // không được index
+            assertThrows(IllegalArgumentException.class, () -> r.count(" :: "));
+            assertEquals(0, r.count("x".repeat(64)));
+        }
+    }
+
+    @Test
+    void skipsUnchangedFilesAndReplacesModifiedOnes() throws IOException {
+        Path logs = Files.createDirectories(tmp.resolve("logs"));
+        Path a = write(logs.resolve("a.txt"), "error error\n", 1);
+        write(logs.resolve("b.txt"), "error\n", 1);
+        index(logs);
+
+        try (LogIndexWriter w = LogIndexWriter.open(tmp.resolve("idx"))) {
+            assertFalse(w.needsIndexing(a));
+            write(a, "info\n", 2);
+            assertTrue(w.needsIndexing(a));
+        }
+        index(logs);
+
+        try (LogIndexReader r = LogIndexReader.open(tmp.resolve("idx"))) {
+            assertEquals(2, r.getFileCount());
+            assertEquals(1, r.count("error"));   // postings cũ của a.txt đã bị đánh dấu xóa
+            assertEquals(1, r.count("info"));
+            assertEquals(1, r.lookup("error").size());
+        }
+    }
+
+    @Test
+    void fileAddedTwiceBeforeFlushKeepsOnlyLatestContent() throws IOException {
+        Path a = write(tmp.resolve("a.txt"), "error\n", 1);
+        try (LogIndexWriter w = LogIndexWriter.open(tmp.resolve("idx"))) {
+            w.addFile(a, "error\n");
+            w.addFile(a, "error error\n");
+        }
+        try (LogIndexReader r = LogIndexReader.open(tmp.resolve("idx"))) {
+            assertEquals(1, r.getFileCount());
+            assertEquals(2, r.count("error"));
+        }
+    }
+
+    @Test
+    void removesFilesMissingFromScannedFolder() throws IOException {
+        Path logs = Files.createDirectories(tmp.resolve("logs"));
+        Path other = Files.createDirectories(tmp.resolve("other"));
+        for (int i = 0; i < 10; i++) write(logs.resolve("f" + i + ".txt"), "error\n", 1);
+        write(other.resolve("o.txt"), "error\n", 1);
+        index(logs);
+        index(other);
+
+        Files.delete(logs.resolve("f3.txt"));
+        index(logs);
+
+        try (LogIndexReader r = LogIndexReader.open(tmp.resolve("idx"))) {
+            assertEquals(10, r.getFileCount());  // file ở thư mục khác không bị ảnh hưởng
+            assertEquals(10, r.count("error"));
+            assertFalse(r.lookup("error").stream().anyMatch(p -> p.getFilePath().endsWith("f3.txt")));
+        }
+    }
+
+    @Test
+    void mergesSegmentsAndDropsDeletedPostings() throws IOException {
+        Path logs = Files.createDirectories(tmp.resolve("logs"));
+        for (int run = 0; run < 12; run++) {
+            write(logs.resolve("f" + run + ".txt"), "error run" + run + "\n", 1);
+            index(logs);
+        }
+        assertTrue(segmentFiles() <= 9);
+
+        try (LogIndexReader r = LogIndexReader.open(tmp.resolve("idx"))) {
+            assertEquals(12, r.getFileCount());
+            assertEquals(12, r.count("error"));
+            assertEquals(1, r.count("run11"));
+        }
+
+        // Xóa quá 30% số file -> lần close tiếp theo gộp lại, không còn file .del
+        for (int i = 0; i < 6; i++) Files.delete(logs.resolve("f" + i + ".txt"));
+        index(logs);
+        assertEquals(1, segmentFiles());
+        try (Stream<Path> s = Files.list(tmp.resolve("idx"))) {
+            assertFalse(s.anyMatch(p -> p.toString().endsWith(".del")));
+        }
+        try (LogIndexReader r = LogIndexReader.open(tmp.resolve("idx"))) {
+            assertEquals(6, r.getFileCount());
+            assertEquals(6, r.count("error"));
+            assertEquals(0, r.count("run0"));
+            assertEquals(6, r.lookup("error").size());
+        }
+    }
+
+    @Test
+    void countWithTombstoneWalksDocsOnly() throws IOException {
+        Path logs = Files.createDirectories(tmp.resolve("logs"));
+        write(logs.resolve("big.txt"), "request ok\n".repeat(5000), 1);
+        write(logs.resolve("small.txt"), "request\n", 1);
+        for (int i = 0; i < 4; i++) write(logs.resolve("other" + i + ".txt"), "info\n", 1); // giữ tỉ lệ xóa dưới ngưỡng merge
+        index(logs);
+        write(logs.resolve("small.txt"), "request request\n", 2); // bản cũ bị đánh dấu xóa trong segment đầu
+        index(logs);
+
+        // Phá hỏng toàn bộ byte offset của "request" trên đĩa: count vẫn đúng vì chỉ đọc phần doc
+        IndexManifest manifest = IndexManifest.read(tmp.resolve("idx"));
+        assertTrue(manifest.segments.values().stream().anyMatch(delGen -> delGen != 0));
+        for (int number : manifest.segments.keySet()) corruptOffsets(number, "request");
+
+        try (LogIndexReader r = LogIndexReader.open(tmp.resolve("idx"))) {
+            assertEquals(5002, r.count("request"));
+        }
+    }
+
+    @Test
+    void readerNoticesNewCommit() throws IOException {
+        Path logs = Files.createDirectories(tmp.resolve("logs"));
+        write(logs.resolve("a.txt"), "error\n", 1);
+        index(logs);
+        try (LogIndexReader r = LogIndexReader.open(tmp.resolve("idx"))) {
+            assertTrue(r.isCurrent());
+            write(logs.resolve("b.txt"), "error\n", 1);
+            index(logs);
+            assertFalse(r.isCurrent());
+            assertEquals(1, r.count("error")); // reader cũ vẫn đọc được bản đã mở
+        }
+    }
+
+    /* ===================== Helpers ===================== */
+
+    // Giống analyzeLogs: chỉ index file đã đổi rồi đánh dấu xóa file không còn trong thư mục
+    private void index(Path folder) throws IOException {
+        try (LogIndexWriter w = LogIndexWriter.open(tmp.resolve("idx"));
+             Stream<Path> s = Files.list(folder)) {
+            Set<Path> present = new HashSet<>();
+            for (Path p : (Iterable<Path>) s::iterator) {
+                present.add(p);
+                if (w.needsIndexing(p)) w.addFile(p, Files.readString(p));
+            }
+            w.removeMissing(folder, present);
+        }
+    }
+
+    // Ghi 0xFF lên phần offset của mọi doc chứa term trong segment
+    private void corruptOffsets(int number, String term) throws IOException {
+        Path dir = tmp.resolve("idx");
+        try (Segment seg = Segment.open(dir, number);
+             FileChannel ch = FileChannel.open(Segment.pathOf(dir, number), StandardOpenOption.WRITE)) {
+            Segment.TermEntry entry = seg.find(term);
+            byte[] junk = new byte[entry.length - entry.docsLength];
+            Arrays.fill(junk, (byte) 0xFF);
+            ch.write(ByteBuffer.wrap(junk), entry.offset + entry.docsLength);
+        }
+    }
+
+    private static Path write(Path file, String content, long mtime) throws IOException {
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(mtime * 1000));
+        return file;
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> s = Files.list(tmp.resolve("idx"))) {
+            return s.filter(p -> p.toString().endsWith(".idx")).count();
+        }
+    }
+
+    private static long indexOf(byte[] haystack, String needle) {
+        byte[] n = needle.getBytes(StandardCharsets.UTF_8);
+        outer:
+        for (int i = 0; i + n.length <= haystack.length; i++) {
+            for (int j = 0; j < n.length; j++) {
+                if (haystack[i + j] != n[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+}
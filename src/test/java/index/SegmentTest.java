@@ -0,0 +1,205 @@
+package index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentTest {
+    private static final int DOCS = 5;
+
+    @TempDir
+    Path dir;
+
+    // term -> postings theo doc: postings[doc] = {count, offset1, ...} hoặc null nếu term không có trong doc
+    private final TreeMap<String, long[][]> expected = new TreeMap<>();
+
+    @Test
+    void reopensWithSameFilesTermsAndPostings() throws IOException {
+        List<Segment.FileEntry> files = writeSegment(1, 300); // 300 term -> nhiều block từ điển
+
+        try (Segment seg = Segment.open(dir, 1)) {
+            assertEquals(DOCS, seg.fileCount);
+            assertEquals(expected.size(), seg.termCount);
+
+            List<Segment.FileEntry> read = seg.files();
+            for (int i = 0; i < DOCS; i++) {
+                assertEquals(files.get(i).path, read.get(i).path);
+                assertEquals(files.get(i).size, read.get(i).size);
+                assertEquals(files.get(i).lastModified, read.get(i).lastModified);
+            }
+
+            for (String term : expected.keySet()) {
+                Segment.TermEntry entry = seg.find(term);
+                assertNotNull(entry, term);
+                assertEquals(term, entry.term);
+                assertPostings(seg, entry, expected.get(term));
+            }
+        }
+    }
+
+    @Test
+    void findReturnsNullForMissingTerms() throws IOException {
+        writeSegment(1, 300);
+        try (Segment seg = Segment.open(dir, 1)) {
+            assertNull(seg.find(""));                // trước term đầu tiên
+            assertNull(seg.find("term0001x"));       // giữa hai term
+            assertNull(seg.find("term0150a"));       // giữa hai term, ở block khác
+            assertNull(seg.find("zzz"));             // sau term cuối cùng
+        }
+    }
+
+    @Test
+    void termIteratorVisitsDictionaryInOrderWithCumulativeOffsets() throws IOException {
+        writeSegment(1, 200);
+        try (Segment seg = Segment.open(dir, 1)) {
+            Segment.TermIterator it = seg.terms();
+            List<String> terms = new ArrayList<>();
+            long nextOffset = 0;
+            while (it.next()) {
+                terms.add(it.entry.term);
+                assertEquals(nextOffset, it.entry.offset); // postings nằm liền nhau từ đầu file
+                nextOffset += it.entry.length;
+            }
+            assertEquals(new ArrayList<>(expected.keySet()), terms);
+        }
+    }
+
+    @Test
+    void countReadsOnlyTheDocPart() throws IOException {
+        Segment.TermBuffer t = new Segment.TermBuffer();
+        long[] offsets = new long[1001];
+        offsets[0] = 1000;
+        for (int i = 1; i <= 1000; i++) offsets[i] = i * 1000L;
+        for (int doc = 0; doc < 3; doc++) t.add(doc * 2, offsets);
+        try (Segment.Writer out = new Segment.Writer(dir, 1)) {
+            out.addTerm("request", t);
+            out.finish(List.of());
+        }
+
+        try (Segment seg = Segment.open(dir, 1)) {
+            Segment.TermEntry entry = seg.find("request");
+            assertTrue(entry.docsLength <= 3 * 5, "phần doc: " + entry.docsLength + " byte");
+            assertTrue(entry.length > 3000, "postings: " + entry.length + " byte");
+
+            Segment.PostingsReader r = seg.postings(entry, false);
+            List<Integer> docs = new ArrayList<>();
+            long total = 0;
+            while (r.next()) {
+                docs.add(r.doc);
+                total += r.freq;
+            }
+            assertEquals(List.of(0, 2, 4), docs);
+            assertEquals(3000, total);
+
+            // Đọc cả offset nhưng bỏ qua doc giữa: doc sau vẫn ra đúng offset
+            r = seg.postings(entry, true);
+            assertTrue(r.next());
+            assertTrue(r.next());
+            assertTrue(r.next());
+            assertArrayEquals(Arrays.copyOfRange(offsets, 1, 1001), r.offsets());
+            assertFalse(r.next());
+        }
+    }
+
+    @Test
+    void rejectsCorruptedTrailer() throws IOException {
+        writeSegment(1, 10);
+        Path file = Segment.pathOf(dir, 1);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 0x7F;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> Segment.open(dir, 1));
+
+        Files.write(file, new byte[8]);
+        assertThrows(IOException.class, () -> Segment.open(dir, 1));
+    }
+
+    @Test
+    void abandonedWriterLeavesNoFiles() throws IOException {
+        try (Segment.Writer out = new Segment.Writer(dir, 7)) {
+            Segment.TermBuffer postings = new Segment.TermBuffer();
+            postings.add(0, new long[]{1, 0});
+            out.addTerm("a", postings);
+        }
+        try (var s = Files.list(dir)) {
+            assertFalse(s.findAny().isPresent());
+        }
+    }
+
+    private List<Segment.FileEntry> writeSegment(int number, int termCount) throws IOException {
+        List<Segment.FileEntry> files = new ArrayList<>();
+        for (int i = 0; i < DOCS; i++) {
+            files.add(new Segment.FileEntry("/logs/tệp_" + i + ".txt", 1000L * i + 7, 1_700_000_000_000L + i));
+        }
+        for (int t = 0; t < termCount; t++) {
+            long[][] postings = new long[DOCS][];
+            for (int doc = t % 3; doc < DOCS; doc += 1 + t % 2) {
+                int n = 1 + (t + doc) % 4;
+                long[] offsets = new long[n + 1];
+                offsets[0] = n;
+                for (int i = 1; i <= n; i++) offsets[i] = (long) i * (t + 1) * 131 + (i == 2 ? 0 : 1L << 33);
+                Arrays.sort(offsets, 1, n + 1);
+                postings[doc] = offsets;
+            }
+            expected.put(String.format("term%04d", t), postings);
+        }
+        try (Segment.Writer out = new Segment.Writer(dir, number)) {
+            for (var e : expected.entrySet()) {
+                Segment.TermBuffer buf = new Segment.TermBuffer();
+                for (int doc = 0; doc < DOCS; doc++) {
+                    if (e.getValue()[doc] != null) buf.add(doc, e.getValue()[doc]);
+                }
+                out.addTerm(e.getKey(), buf);
+            }
+            out.finish(files);
+        }
+        assertTrue(Files.exists(Segment.pathOf(dir, number)));
+        return files;
+    }
+
+    // Giải mã trực tiếp từng byte để kiểm tra định dạng: phần doc (delta docId, freq, độ dài offset) rồi phần offset
+    private static void assertPostings(Segment seg, Segment.TermEntry entry, long[][] postings) throws IOException {
+        ByteBuffer buf = seg.readPostings(entry);
+        ByteBuffer offsetsBuf = buf.duplicate().position(entry.docsLength);
+        int docFreq = 0;
+        long totalFreq = 0;
+        int doc = 0;
+        for (int d = 0; d < entry.docFreq; d++) {
+            doc += (int) VarInt.read(buf);
+            long[] offsets = new long[(int) VarInt.read(buf) + 1];
+            offsets[0] = offsets.length - 1;
+            int length = (int) VarInt.read(buf);
+            int start = offsetsBuf.position();
+            long offset = 0;
+            for (int i = 1; i < offsets.length; i++) {
+                offset += VarInt.read(offsetsBuf);
+                offsets[i] = offset;
+            }
+            assertEquals(length, offsetsBuf.position() - start);
+            assertArrayEquals(postings[doc], offsets);
+            docFreq++;
+            totalFreq += offsets[0];
+        }
+        assertEquals(entry.docsLength, buf.position());
+        assertFalse(offsetsBuf.hasRemaining());
+        long expectedDocs = Arrays.stream(postings).filter(p -> p != null).count();
+        assertEquals(expectedDocs, docFreq);
+        assertEquals(entry.totalFreq, totalFreq);
+    }
+}
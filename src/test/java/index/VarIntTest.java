@@ -0,0 +1,47 @@
+package index;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class VarIntTest {
+
+    @Test
+    void roundTripsBoundaryValues() throws IOException {
+        long[] values = {0, 1, 127, 128, 255, 16_383, 16_384, Integer.MAX_VALUE, 1L << 35, Long.MAX_VALUE, -1L};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long v : values) VarInt.write(out, v);
+
+        ByteBuffer buf = ByteBuffer.wrap(out.toByteArray());
+        for (long v : values) assertEquals(v, VarInt.read(buf));
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test
+    void usesOneByteBelow128AndTwoBytesBelow16384() throws IOException {
+        assertEquals(1, encode(127).length);
+        assertEquals(2, encode(128).length);
+        assertEquals(2, encode(16_383).length);
+        assertEquals(3, encode(16_384).length);
+        assertEquals(10, encode(-1L).length); // giá trị âm được ghi như số không dấu 64 bit
+    }
+
+    @Test
+    void rejectsOverlongEncoding() {
+        byte[] bytes = new byte[11];
+        java.util.Arrays.fill(bytes, (byte) 0x80);
+        assertThrows(IllegalStateException.class, () -> VarInt.read(ByteBuffer.wrap(bytes)));
+    }
+
+    private static byte[] encode(long value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VarInt.write(out, value);
+        return out.toByteArray();
+    }
+}
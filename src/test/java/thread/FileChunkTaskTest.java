@@ -0,0 +1,117 @@
+package thread;
+
+import index.LogIndexReader;
+import index.LogIndexWriter;
+import index.Posting;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileChunkTaskTest {
+    @TempDir
+    Path tmp;
+
+    @Test
+    void chunkCountsMatchFileReaderTask() throws Exception {
+        Path file = writeLog(tmp.resolve("big.log"));
+        model.LogResult whole = new FileReaderTask(file).call();
+        for (int chunk : new int[]{1, 7, 64, 1000, 1 << 20}) {
+            long wc = 0, kc = 0;
+            for (long[] r : runChunks(file, chunk, null)) {
+                wc += r[0];
+                kc += r[1];
+            }
+            assertEquals(whole.getWordCount(), wc, "chunk " + chunk);
+            assertEquals(whole.getKeywordCount(), kc, "chunk " + chunk);
+        }
+    }
+
+    @Test
+    void chunkedIndexMatchesWholeFileIndex() throws Exception {
+        Path file = writeLog(tmp.resolve("big.log"));
+        try (LogIndexWriter w = LogIndexWriter.open(tmp.resolve("whole"))) {
+            w.addFile(file, Files.readString(file));
+        }
+        // Index cũ có nội dung khác: beginFile phải xóa postings cũ (file "lớn lên" qua ngưỡng chia đoạn)
+        try (LogIndexWriter w = LogIndexWriter.open(tmp.resolve("chunked"))) {
+            w.addFile(file, "error stale\n");
+        }
+        try (LogIndexWriter w = LogIndexWriter.open(tmp.resolve("chunked"))) {
+            w.beginFile(file);
+            runChunks(file, 97, w);
+        }
+
+        try (LogIndexReader whole = LogIndexReader.open(tmp.resolve("whole"));
+             LogIndexReader chunked = LogIndexReader.open(tmp.resolve("chunked"))) {
+            assertEquals(1, chunked.getFileCount());
+            assertEquals(0, chunked.count("stale"));
+            for (String term : new String[]{"error", "info", "kết", "2024", "missing"}) {
+                assertEquals(whole.count(term), chunked.count(term), term);
+                List<Posting> a = whole.lookup(term);
+                List<Posting> b = chunked.lookup(term);
+                assertEquals(a.size(), b.size(), term);
+                if (!a.isEmpty()) assertArrayEquals(a.get(0).getLineOffsets(), b.get(0).getLineOffsets());
+            }
+        }
+    }
+
+    @Test
+    void failedFileIsReportedUntilReindexed() throws Exception {
+        Path file = writeLog(tmp.resolve("big.log"));
+        try (LogIndexWriter w = LogIndexWriter.open(tmp.resolve("idx"))) {
+            w.beginFile(file);
+            runChunks(file, 500, w);
+            w.markUnindexed(file);
+        }
+        try (LogIndexReader r = LogIndexReader.open(tmp.resolve("idx"))) {
+            assertEquals(0, r.count("error"));
+            assertEquals(List.of(file.toAbsolutePath().normalize().toString()), r.getUnindexedFiles());
+        }
+        try (LogIndexWriter w = LogIndexWriter.open(tmp.resolve("idx"))) {
+            assertTrue(w.needsIndexing(file));
+            w.beginFile(file);
+            runChunks(file, 500, w);
+        }
+        try (LogIndexReader r = LogIndexReader.open(tmp.resolve("idx"))) {
+            assertTrue(r.count("error") > 0);
+            assertTrue(r.getUnindexedFiles().isEmpty());
+        }
+    }
+
+    // Chạy các đoạn theo thứ tự ngẫu nhiên (giống thread pool) rồi trả kết quả theo thứ tự đoạn
+    private static List<long[]> runChunks(Path file, long chunk, LogIndexWriter writer) throws Exception {
+        long size = Files.size(file);
+        List<FileChunkTask> tasks = new ArrayList<>();
+        for (long start = 0; start < size; start += chunk) {
+            tasks.add(new FileChunkTask(file, start, Math.min(start + chunk, size), writer));
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) order.add(i);
+        Collections.shuffle(order, new java.util.Random(7));
+        long[][] results = new long[tasks.size()][];
+        for (int i : order) results[i] = tasks.get(i).call();
+        return List.of(results);
+    }
+
+    private static Path writeLog(Path file) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append("2024-01-01 ").append(i % 5 == 0 ? "ERROR" : "INFO")
+                    .append(" kết nối ").append(i).append(i % 3 == 0 ? " error retry" : "").append('\n');
+            if (i % 50 == 0) sb.append('\n');
+        }
+        sb.append("dòng cuối error không xuống dòng");
+        Files.writeString(file, sb);
+        return file;
+    }
+}